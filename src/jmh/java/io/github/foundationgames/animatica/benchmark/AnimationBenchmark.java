@@ -0,0 +1,117 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.benchmark;
+
+import io.github.foundationgames.animatica.animation.AnimatedTexture;
+import io.github.foundationgames.animatica.animation.AnimationMeta;
+import io.github.foundationgames.animatica.animation.BakeBudget;
+import io.github.foundationgames.animatica.animation.ImagePool;
+import io.github.foundationgames.animatica.animation.SharedImageCache;
+import io.github.foundationgames.animatica.animation.UploadSink;
+import net.minecraft.util.Identifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Measures advancing and compositing an animated texture made of several 16x16 animations laid out in a grid
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AnimationBenchmark {
+    private static final int ANIM_SIZE = 16;
+    private static final int FRAMES = 8;
+    private static final int FRAME_DURATION = 4;
+
+    @Param({"64", "256"})
+    public int size;
+    @Param({"1", "16"})
+    public int count;
+    // "off" plays frames as they are, "blend" interpolates while drawing and "baked" draws pre-blended frames
+    @Param({"off", "blend", "baked"})
+    public String interpolation;
+
+    private AnimatedTexture texture;
+    private AnimatedTexture.Animation anim;
+    private long tick;
+    private long uploaded;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        boolean interpolate = !interpolation.equals("off");
+        var budget = new BakeBudget(interpolation.equals("baked") ? Long.MAX_VALUE : 0);
+
+        var target = new SharedImageCache.SharedImage(BenchmarkImages.random(size, size, 0));
+        var anims = new AnimatedTexture.Animation[count];
+        int perRow = size / ANIM_SIZE;
+        for (int i = 0; i < count; i++) {
+            var meta = new AnimationMeta(
+                    new Identifier("benchmark", "source_" + i + ".png"),
+                    new Identifier("benchmark", "target.png"),
+                    (i % perRow) * ANIM_SIZE, (i / perRow) * ANIM_SIZE, ANIM_SIZE, ANIM_SIZE,
+                    FRAME_DURATION, interpolate, 0, new int[0], new int[0]
+            );
+            var source = new SharedImageCache.SharedImage(BenchmarkImages.random(ANIM_SIZE, ANIM_SIZE * FRAMES, i + 1));
+            anims[i] = new AnimatedTexture.Animation(meta, source);
+            anims[i].bake(budget);
+        }
+
+        UploadSink sink = (tex, image, x, y, width, height) -> this.uploaded += (long) width * height;
+        this.texture = new AnimatedTexture(new Identifier("benchmark", "target.png-anim"), target, anims, 0, sink, new ImagePool());
+        this.anim = anims[0];
+        this.tick = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.texture.close();
+    }
+
+    @Benchmark
+    public long getStateAt() {
+        return anim.getStateAt(tick++);
+    }
+
+    // Advances one tick, compositing only when the appearance of an animation changes
+    @Benchmark
+    public boolean updateAndDraw() {
+        return texture.updateAndDraw(texture.getImage(), ++tick, false);
+    }
+
+    // Composites every animation regardless of whether it changed
+    @Benchmark
+    public boolean composite() {
+        return texture.updateAndDraw(texture.getImage(), ++tick, true);
+    }
+
+    // Advances one tick including sending redrawn regions to the (counting) upload sink
+    @Benchmark
+    public long tick() {
+        texture.tick(++tick);
+        return uploaded;
+    }
+}
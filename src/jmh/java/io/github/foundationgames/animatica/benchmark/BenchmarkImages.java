@@ -0,0 +1,45 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.benchmark;
+
+import net.minecraft.client.texture.NativeImage;
+
+import java.util.Random;
+
+// Synthetic images for benchmarks, which live in native memory and need no GL context
+public final class BenchmarkImages {
+    private BenchmarkImages() {
+    }
+
+    // Creates an image filled with random colors, with a mix of opaque, translucent and fully transparent pixels
+    public static NativeImage random(int width, int height, long seed) {
+        var random = new Random(seed);
+        var image = new NativeImage(NativeImage.Format.RGBA, width, height, false);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int alpha = switch (random.nextInt(4)) {
+                    case 0 -> 0;
+                    case 1 -> random.nextInt(256);
+                    default -> 255;
+                };
+                image.setColor(x, y, (alpha << 24) | (random.nextInt() & 0xFFFFFF));
+            }
+        }
+        return image;
+    }
+}
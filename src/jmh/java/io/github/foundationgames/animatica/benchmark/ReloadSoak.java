@@ -0,0 +1,156 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.benchmark;
+
+import io.github.foundationgames.animatica.animation.AnimatedTexture;
+import io.github.foundationgames.animatica.animation.AnimationMeta;
+import io.github.foundationgames.animatica.animation.BakeBudget;
+import io.github.foundationgames.animatica.animation.ImagePool;
+import io.github.foundationgames.animatica.animation.SharedImageCache;
+import io.github.foundationgames.animatica.animation.UploadSink;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.util.Identifier;
+import org.lwjgl.system.Configuration;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+// Repeatedly replaces animated textures the way applying a resource reload does, checking that the native memory in use
+// and the amount of live textures settle on the same levels every time, and return to where they started once all
+// textures are released. Some textures are kept across each reload, and some are ticked in pipelined mode so that they
+// hold back buffers as well. Run with `./gradlew soakTest`.
+// There is no GL context here, so only the CPU side of textures is covered; GL textures are left to the texture manager
+public final class ReloadSoak {
+    private static final int TEXTURES = 32;
+    private static final int ANIMS_PER_TEXTURE = 4;
+    private static final int CYCLES = 200;
+    private static final int TICKS_PER_CYCLE = 40;
+    private static final Executor DIRECT = Runnable::run;
+    private static final UploadSink SINK = (texture, image, x, y, width, height) -> {};
+
+    private ReloadSoak() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Must be set before LWJGL allocates anything, so that every allocation is tracked
+        Configuration.DEBUG_MEMORY_ALLOCATOR.set(true);
+
+        var textures = new Int2ObjectOpenHashMap<AnimatedTexture>();
+        var pool = new ImagePool();
+        long tick = 0;
+
+        // Anything allocated once on first use is allocated by a full cycle before the starting level is taken
+        tick = reload(textures, pool, 0, tick);
+        releaseAll(textures, pool);
+        final long baseline = getNativeBytes();
+
+        long steady = -1;
+        for (int cycle = 1; cycle <= CYCLES; cycle++) {
+            tick = reload(textures, pool, cycle, tick);
+
+            long bytes = getNativeBytes();
+            if (textures.size() != TEXTURES) {
+                throw new IllegalStateException(String.format("Cycle %d: %d live textures, expected %d", cycle, textures.size(), TEXTURES));
+            }
+            if (steady < 0) {
+                steady = bytes;
+            } else if (bytes != steady) {
+                throw new IllegalStateException(String.format("Cycle %d: %d bytes of native memory in use, expected %d", cycle, bytes, steady));
+            }
+            if (cycle % 50 == 0) {
+                System.out.printf("Cycle %d: %d textures, %d KiB of native memory%n", cycle, textures.size(), (bytes - baseline) / 1024);
+            }
+        }
+
+        releaseAll(textures, pool);
+        long remaining = getNativeBytes() - baseline;
+        if (!textures.isEmpty() || remaining != 0) {
+            throw new IllegalStateException(String.format("%d textures and %d bytes of native memory left behind after releasing all textures", textures.size(), remaining));
+        }
+        System.out.printf("Passed %d reloads, all native memory was released%n", CYCLES);
+    }
+
+    // Replaces every texture but those kept on this cycle, then ticks all of them for a while
+    private static long reload(Int2ObjectOpenHashMap<AnimatedTexture> textures, ImagePool pool, int cycle, long tick) throws IOException {
+        for (int i = 0; i < TEXTURES; i++) {
+            // A third of the textures have unchanged inputs on every other reload
+            boolean kept = cycle % 2 == 1 && i % 3 == 0 && textures.containsKey(i);
+            if (!kept && textures.containsKey(i)) {
+                textures.remove(i).releaseTo(pool);
+            }
+        }
+
+        var budget = new BakeBudget(Long.MAX_VALUE);
+        for (int i = 0; i < TEXTURES; i++) {
+            if (!textures.containsKey(i)) {
+                textures.put(i, create(i, cycle, tick, budget, pool));
+            }
+        }
+        pool.clear();
+
+        for (int t = 0; t < TICKS_PER_CYCLE; t++) {
+            tick++;
+            for (var entry : textures.int2ObjectEntrySet()) {
+                var texture = entry.getValue();
+                if (texture.getNextChangeTick() > tick) continue;
+
+                if (entry.getIntKey() % 2 == 0) {
+                    texture.tickPipelined(tick, DIRECT, 1);
+                } else {
+                    texture.tick(tick);
+                }
+            }
+        }
+        return tick;
+    }
+
+    private static AnimatedTexture create(int index, int cycle, long tick, BakeBudget budget, ImagePool pool) throws IOException {
+        // Sizes depend on the texture alone, so that pooled buffers fit the textures replacing them
+        int size = 16 << (index % 3);
+        var target = new SharedImageCache.SharedImage(BenchmarkImages.random(size * ANIMS_PER_TEXTURE, size, index * 31L + cycle));
+        var anims = new AnimatedTexture.Animation[ANIMS_PER_TEXTURE];
+        for (int a = 0; a < ANIMS_PER_TEXTURE; a++) {
+            var meta = new AnimationMeta(
+                    new Identifier("soak", "source_" + index + "_" + a + ".png"),
+                    new Identifier("soak", "target_" + index + ".png"),
+                    a * size, 0, size, size,
+                    2 + a, a % 2 == 0, 0, new int[0], new int[0]
+            );
+            var source = new SharedImageCache.SharedImage(BenchmarkImages.random(size, size * 6, index * 131L + a * 7L + cycle));
+            anims[a] = new AnimatedTexture.Animation(meta, source);
+            anims[a].bake(budget);
+        }
+        return new AnimatedTexture(new Identifier("soak", "target_" + index + ".png-anim"), target, anims, tick, SINK, pool);
+    }
+
+    private static void releaseAll(Int2ObjectOpenHashMap<AnimatedTexture> textures, ImagePool pool) {
+        for (var texture : textures.values()) {
+            texture.releaseTo(pool);
+        }
+        textures.clear();
+        pool.clear();
+    }
+
+    // The native memory currently allocated through LWJGL, which includes every image
+    private static long getNativeBytes() {
+        long[] total = {0};
+        MemoryUtil.memReport((address, memory, threadId, threadName, stacktrace) -> total[0] += memory);
+        return total[0];
+    }
+}
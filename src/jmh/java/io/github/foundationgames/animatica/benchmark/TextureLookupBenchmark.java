@@ -0,0 +1,159 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.benchmark;
+
+import io.github.foundationgames.animatica.animation.AnimatedTexture;
+import io.github.foundationgames.animatica.animation.AnimationLoader;
+import io.github.foundationgames.animatica.animation.AnimationMeta;
+import io.github.foundationgames.animatica.animation.ImagePool;
+import io.github.foundationgames.animatica.animation.SharedImageCache;
+import io.github.foundationgames.animatica.util.IdentifierExtension;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Measures finding the animated texture replacing a texture each time one is bound. "map" is a plain lookup by identifier,
+// as done before lookups were cached; "hit" reads the result cached on an identifier during the current reload generation,
+// while "miss" is the first lookup of an identifier after a reload. "bind" is everything the RenderSystem mixin does per
+// bind, except for reading the config, which is not loaded here.
+// Mixins are not applied here, so identifiers are an equivalent subclass carrying the same fields as IdentifierMixin adds,
+// and the loader's textures are filled in directly rather than through a resource reload
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TextureLookupBenchmark {
+    private static final int TEXTURES = 64;
+
+    // Whether the bound texture is animated, most are not
+    @Param({"true", "false"})
+    public boolean animated;
+
+    private final AnimationLoader loader = AnimationLoader.INSTANCE;
+    private final Map<Identifier, AnimatedTexture> map = new Object2ObjectOpenHashMap<>();
+    private Map<Identifier, AnimatedTexture> loaderTextures;
+    private Field generation;
+    private ExtendedIdentifier id;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() throws IOException, ReflectiveOperationException {
+        var texturesField = AnimationLoader.class.getDeclaredField("texturesByTarget");
+        texturesField.setAccessible(true);
+        this.loaderTextures = (Map<Identifier, AnimatedTexture>) texturesField.get(loader);
+        this.generation = AnimationLoader.class.getDeclaredField("generation");
+        this.generation.setAccessible(true);
+
+        var pool = new ImagePool();
+        for (int i = 0; i < TEXTURES; i++) {
+            var targetId = new Identifier("minecraft", "textures/block/animated_block_" + i + ".png");
+            var meta = new AnimationMeta(
+                    new Identifier("minecraft", "optifine/anim/animated_block_" + i + ".png"), targetId,
+                    0, 0, 16, 16, 2, false, 0, new int[0], new int[0]
+            );
+            var anims = new AnimatedTexture.Animation[] {
+                    new AnimatedTexture.Animation(meta, new SharedImageCache.SharedImage(BenchmarkImages.random(16, 64, i)))
+            };
+            var target = new SharedImageCache.SharedImage(BenchmarkImages.random(16, 16, -i));
+            var texture = new AnimatedTexture(new Identifier("minecraft", targetId.getPath() + "-anim"), target, anims, 0, (tex, image, x, y, w, h) -> {}, pool);
+            this.map.put(targetId, texture);
+        }
+        this.loaderTextures.putAll(this.map);
+        // Identifiers left over from any earlier trial are stamped with an older generation
+        this.generation.setInt(loader, this.generation.getInt(loader) + 1);
+
+        this.id = new ExtendedIdentifier("minecraft", animated ? "textures/block/animated_block_7.png" : "textures/block/stone.png");
+        loader.getAnimatedTexture(this.id);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.loaderTextures.clear();
+        for (var texture : this.map.values()) {
+            texture.close();
+        }
+        this.map.clear();
+    }
+
+    @Benchmark
+    public @Nullable AnimatedTexture map() {
+        return map.get(id);
+    }
+
+    @Benchmark
+    public @Nullable AnimatedTexture hit() {
+        return loader.getAnimatedTexture(id);
+    }
+
+    @Benchmark
+    public @Nullable AnimatedTexture miss() {
+        // Stamped as looked up during an earlier reload, just like every identifier is right after one
+        id.animatica$setAnimatedTexture(-1, null);
+        return loader.getAnimatedTexture(id);
+    }
+
+    @Benchmark
+    public Identifier bind() {
+        var anim = loader.getAnimatedTexture(id);
+        if (anim != null) {
+            loader.onBind(anim);
+            return anim.getId();
+        }
+        return id;
+    }
+
+    // Carries the lookup cache that IdentifierMixin adds to every identifier in game
+    private static final class ExtendedIdentifier extends Identifier implements IdentifierExtension {
+        private int generation = -1;
+        private @Nullable AnimatedTexture animatedTexture = null;
+
+        private ExtendedIdentifier(String namespace, String path) {
+            super(namespace, path);
+        }
+
+        @Override
+        public int animatica$getGeneration() {
+            return this.generation;
+        }
+
+        @Override
+        public @Nullable AnimatedTexture animatica$getAnimatedTexture() {
+            return this.animatedTexture;
+        }
+
+        @Override
+        public void animatica$setAnimatedTexture(int generation, @Nullable AnimatedTexture texture) {
+            this.generation = generation;
+            this.animatedTexture = texture;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.benchmark;
+
+import io.github.foundationgames.animatica.util.Utilities;
+import net.minecraft.client.texture.NativeImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+// Measures the pixel operations used to composite animation frames, one frame of the given size per operation
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UtilitiesBenchmark {
+    @Param({"16", "64", "256"})
+    public int size;
+
+    private NativeImage strip;
+    private NativeImage dest;
+    private int c1;
+    private int c2;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Two frames stacked vertically, as they are in animation sources
+        this.strip = BenchmarkImages.random(size, size * 2, 1);
+        this.dest = new NativeImage(NativeImage.Format.RGBA, size, size, false);
+        this.c1 = strip.getColor(0, 0) | 0xFF000000;
+        this.c2 = strip.getColor(0, size) | 0xFF000000;
+
+        // Results are only meaningful if the row-wise copy gives exactly what the former per-pixel copy did
+        verifyCopy(0, size, size, size, size, size, 0, 0);
+        // Selections starting past the left and top edges, onto a target narrower than the source
+        verifyCopy(3, size / 2 + 1, size / 2, size / 2 - 1, size / 2 + 5, size, 5, 2);
+    }
+
+    private void verifyCopy(int u, int v, int w, int h, int destWidth, int destHeight, int du, int dv) {
+        try (var expected = BenchmarkImages.random(destWidth, destHeight, 2);
+             var actual = BenchmarkImages.random(destWidth, destHeight, 2)) {
+            for (int ry = 0; ry < h; ry++) {
+                for (int rx = 0; rx < w; rx++) {
+                    expected.setColor(du + rx, dv + ry, strip.getColor(u + rx, v + ry));
+                }
+            }
+            Utilities.copy(strip, u, v, w, h, actual, du, dv);
+
+            // Pixels outside the selection are compared too, as they must be left untouched
+            for (int y = 0; y < destHeight; y++) {
+                for (int x = 0; x < destWidth; x++) {
+                    if (expected.getColor(x, y) != actual.getColor(x, y)) {
+                        throw new IllegalStateException(String.format("Copy of %dx%d at (%d, %d) onto (%d, %d) differs from a per-pixel copy at (%d, %d)", w, h, u, v, du, dv, x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.strip.close();
+        this.dest.close();
+    }
+
+    @Benchmark
+    public NativeImage copy() {
+        Utilities.copy(strip, 0, size, size, size, dest, 0, 0);
+        return dest;
+    }
+
+    @Benchmark
+    public NativeImage blendCopy() {
+        Utilities.blendCopy(strip, 0, 0, 0, size, size, size, dest, 0, 0, 0.37f);
+        return dest;
+    }
+
+    @Benchmark
+    public int lerpColor() {
+        return Utilities.lerpColor(NativeImage.Format.RGBA, c1, c2, 0.37f);
+    }
+}
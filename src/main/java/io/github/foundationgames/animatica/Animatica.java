@@ -18,6 +18,9 @@
 package io.github.foundationgames.animatica;
 
 import io.github.foundationgames.animatica.animation.AnimationLoader;
+import io.github.foundationgames.animatica.debug.AnimationDebug;
+import net.minecraftforge.client.event.CustomizeGuiOverlayEvent;
+import net.minecraftforge.client.event.RegisterClientCommandsEvent;
 import net.minecraftforge.client.event.RegisterClientReloadListenersEvent;
 import net.minecraftforge.common.ForgeConfigSpec;
 import net.minecraftforge.common.MinecraftForge;
@@ -27,6 +30,7 @@ import net.minecraftforge.fml.IExtensionPoint;
 import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.config.ModConfig;
+import net.minecraftforge.fml.event.config.ModConfigEvent;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import net.minecraftforge.network.NetworkConstants;
 import org.apache.logging.log4j.LogManager;
@@ -43,17 +47,64 @@ public class Animatica {
         MinecraftForge.EVENT_BUS.addListener(EventPriority.LOWEST, (TickEvent.ClientTickEvent event) -> {
             if (event.phase == TickEvent.Phase.START) AnimationLoader.INSTANCE.tickTextures();
         });
+        MinecraftForge.EVENT_BUS.addListener((CustomizeGuiOverlayEvent.DebugText event) -> AnimationDebug.addDebugText(event));
+        MinecraftForge.EVENT_BUS.addListener((RegisterClientCommandsEvent event) -> AnimationDebug.registerCommands(event));
 
         FMLJavaModLoadingContext.get().getModEventBus().addListener((RegisterClientReloadListenersEvent event)-> event.registerReloadListener(AnimationLoader.INSTANCE));
+        FMLJavaModLoadingContext.get().getModEventBus().addListener((ModConfigEvent event) -> {
+            if (event.getConfig().getSpec() == CONFIG) animatedTexturesEnabled = ANIMATED_TEXTURES.get();
+        });
+    }
+
+    // Mirrors ANIMATED_TEXTURES, which is checked on every texture bind and too slow to query from the config each time
+    private static volatile boolean animatedTexturesEnabled = true;
+
+    public static boolean areAnimatedTexturesEnabled() {
+        return animatedTexturesEnabled;
+    }
+
+    public static void setAnimatedTexturesEnabled(boolean enabled) {
+        ANIMATED_TEXTURES.set(enabled);
+        animatedTexturesEnabled = enabled;
     }
 
     public static final ForgeConfigSpec CONFIG;
     public static final ForgeConfigSpec.BooleanValue ANIMATED_TEXTURES;
+    public static final ForgeConfigSpec.BooleanValue BAKE_INTERPOLATION;
+    public static final ForgeConfigSpec.IntValue BAKE_BUDGET_MB;
+    public static final ForgeConfigSpec.BooleanValue BAKE_CACHE;
+    public static final ForgeConfigSpec.IntValue IDLE_TICKS;
+    public static final ForgeConfigSpec.IntValue UPLOAD_BUDGET_KB;
+    public static final int MAX_UPLOAD_BUDGET_KB = 8192;
+    public static final int UPLOAD_BUDGET_STEP_KB = 256;
+    public static final ForgeConfigSpec.IntValue TICK_RATE_DIVISOR;
+    public static final ForgeConfigSpec.BooleanValue PIPELINED_COMPOSITING;
 
     static {
         ForgeConfigSpec.Builder builder = new ForgeConfigSpec.Builder();
         builder.push("Animatica");
         ANIMATED_TEXTURES = builder.define("AnimatedTextures", true);
+        BAKE_INTERPOLATION = builder
+                .comment("Pre-computes the frames of interpolated animations when resources are loaded, instead of blending them every tick")
+                .define("BakeInterpolation", true);
+        BAKE_BUDGET_MB = builder
+                .comment("The maximum amount of memory in megabytes that pre-computed interpolation frames may use, animations exceeding it are blended every tick")
+                .defineInRange("BakeBudget", 64, 0, 4096);
+        BAKE_CACHE = builder
+                .comment("Stores decoded animation textures on disk, so that they don't need to be decoded again until resource packs change")
+                .define("BakeCache", true);
+        IDLE_TICKS = builder
+                .comment("Animated textures which have not been used for this many ticks stop updating until they are used again, 0 keeps all textures updating")
+                .defineInRange("IdleTicks", 200, 0, Integer.MAX_VALUE);
+        UPLOAD_BUDGET_KB = builder
+                .comment("The amount of texture data in kilobytes that may be uploaded per tick, textures used most recently or delayed the longest are updated first and the rest are delayed. 0 is unlimited. The video settings slider moves in steps of " + UPLOAD_BUDGET_STEP_KB + " KB")
+                .defineInRange("UploadBudget", 0, 0, MAX_UPLOAD_BUDGET_KB);
+        TICK_RATE_DIVISOR = builder
+                .comment("Animated textures are only updated every this many ticks")
+                .defineInRange("TickRateDivisor", 1, 1, 20);
+        PIPELINED_COMPOSITING = builder
+                .comment("Composites the next frame of animated textures on a separate thread ahead of time, leaving only uploads to the render thread. Uses one more image buffer per animated texture")
+                .define("PipelinedCompositing", false);
         builder.pop();
         CONFIG = builder.build();
     }
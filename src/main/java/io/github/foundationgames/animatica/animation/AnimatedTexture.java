@@ -18,156 +18,557 @@
 package io.github.foundationgames.animatica.animation;
 
 import io.github.foundationgames.animatica.Animatica;
+import io.github.foundationgames.animatica.mixin.NativeImageBackedTextureAccessor;
 import io.github.foundationgames.animatica.util.Utilities;
+import it.unimi.dsi.fastutil.booleans.BooleanArrayList;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
-import it.unimi.dsi.fastutil.objects.ObjectList;
-import it.unimi.dsi.fastutil.objects.ObjectLists;
 import net.minecraft.client.texture.NativeImage;
 import net.minecraft.client.texture.NativeImageBackedTexture;
-import net.minecraft.resource.ResourceManager;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.MathHelper;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class AnimatedTexture extends NativeImageBackedTexture {
+    private final Identifier id;
     public final Animation[] anims;
-    private final NativeImage original;
-    private int frame = 0;
+    // Original pixels under each animation's target region, used to restore only the animated areas
+    private final NativeImage[] backups;
+    // For each animation, the animation drawn earlier whose pixels it copies instead of drawing its own, or -1
+    private final int[] leaders;
+    private final UploadSink uploadSink;
+    // Tracks which animations' target regions were redrawn since the last upload
+    private final boolean[] dirty;
+    // The state of each animation as it is currently drawn on the image, see Animation.getStateAt
+    private final long[] drawnStates;
+    // The tick of the animation clock that drawnStates were computed for
+    private long drawnTick;
+    // Image the next frame is composited into off the render thread, taking the place of the texture's image once done.
+    // Only allocated once the texture is ticked in pipelined mode
+    private @Nullable NativeImage backBuffer;
+    // The composite of the next frame into the back buffer, completing with whether it differs from the current one
+    private @Nullable CompletableFuture<Composite> pending;
+    // The tick of the animation clock on which all animations of this texture started on their first frame
+    private final long startTick;
+    // The tick of the animation clock that the texture's image was last updated for
+    private long lastTick;
+    // The earliest tick on which any animation of this texture will look different
+    private long nextChangeTick;
+    // The tick this texture was last used for rendering on
+    private long lastBindTick;
+    // Whether this texture has not been used for long enough that it stopped being updated
+    private boolean dormant = false;
+    private boolean closed = false;
+    private final TextureMetrics metrics = new TextureMetrics();
+
+    // Decodes the target texture and all animation sources for one animated texture, and bakes its animations.
+    // Does not touch any GL state, so it may be run on a worker thread during resource reloading
+    public static Optional<Prepared> tryPrepare(SharedImageCache images, Identifier targetTexId, List<AnimationMeta> metas, BakeBudget budget) {
+        SharedImageCache.SharedImage target;
+        try {
+            target = images.acquire(targetTexId);
+        } catch (IOException e) {
+            Animatica.LOG.error(e);
+            return Optional.empty();
+        }
 
-    public static Optional<AnimatedTexture> tryCreate(ResourceManager resources, Identifier targetTexId, List<AnimationMeta> anims) {
-        try (var targetTexResource = resources.getResourceOrThrow(targetTexId).getInputStream()) {
-            return Optional.of(new AnimatedTexture(resources, anims, NativeImage.read(targetTexResource)));
-        } catch (IOException e) { Animatica.LOG.error(e); }
+        var image = target.get();
+        metas = getVisible(metas);
+        var anims = new Animation[metas.size()];
+        try {
+            for (int i = 0; i < metas.size(); i++) {
+                var meta = metas.get(i);
+                if (meta.targetX() < 0 || meta.targetY() < 0 || meta.width() <= 0 || meta.height() <= 0 ||
+                        meta.targetX() + meta.width() > image.getWidth() || meta.targetY() + meta.height() > image.getHeight()) {
+                    throw new IOException(String.format("Animation from '%s' does not fit within target texture '%s'", meta.source(), meta.target()));
+                }
 
-        return Optional.empty();
-    }
+                anims[i] = new Animation(meta, images.acquire(meta.source()));
+            }
 
-    @SuppressWarnings("resource")
-    public AnimatedTexture(ResourceManager resources, @NotNull List<AnimationMeta> metas, @NotNull NativeImage image) throws IOException {
-        super(new NativeImage(image.getFormat(), image.getWidth(), image.getHeight(), true));
+            // Animations copying the pixels of another never draw their own, so their frames are not worth baking
+            var drawList = compileDrawList(anims);
+            for (int i = 0; i < drawList.anims().length; i++) {
+                if (drawList.leaders()[i] < 0) drawList.anims()[i].bake(budget);
+            }
+        } catch (IOException | RuntimeException e) {
+            Animatica.LOG.error("Could not prepare animated texture '{}'", targetTexId, e);
 
-        this.anims = new Animation[metas.size()];
+            target.close();
+            for (var anim : anims) {
+                if (anim != null) anim.close();
+            }
+            return Optional.empty();
+        }
+
+        return Optional.of(new Prepared(target, anims));
+    }
+
+    // Leaves out animations entirely covered by one declared after them, which always draws over all of their pixels
+    private static List<AnimationMeta> getVisible(List<AnimationMeta> metas) {
+        List<AnimationMeta> visible = new ObjectArrayList<>(metas.size());
         for (int i = 0; i < metas.size(); i++) {
-            this.anims[i] = new Animation(metas.get(i), resources);
+            var meta = metas.get(i);
+            boolean occluded = false;
+            for (int j = i + 1; j < metas.size() && !occluded; j++) {
+                var other = metas.get(j);
+                occluded = other.targetX() <= meta.targetX() && other.targetY() <= meta.targetY() &&
+                        other.targetX() + other.width() >= meta.targetX() + meta.width() &&
+                        other.targetY() + other.height() >= meta.targetY() + meta.height();
+            }
+
+            if (!occluded) visible.add(meta);
         }
-        this.original = image;
+        return visible;
+    }
 
-        updateAndDraw(this.getImage(), true);
-        this.upload();
+    // Must be created on the render thread when uploading to GL, takes ownership of the target image reference and animations.
+    // Image buffers are taken from the pool where it holds ones of the right size
+    @SuppressWarnings("resource")
+    public AnimatedTexture(@NotNull Identifier id, @NotNull SharedImageCache.SharedImage target, Animation @NotNull [] anims, long tick, @NotNull UploadSink uploadSink, @NotNull ImagePool pool) {
+        super(pool.acquire(target.get().getFormat(), target.get().getWidth(), target.get().getHeight()));
+        var image = target.get();
+
+        this.id = id;
+        var drawList = compileDrawList(anims);
+        this.anims = drawList.anims();
+        this.leaders = drawList.leaders();
+        this.uploadSink = uploadSink;
+
+        this.getImage().copyFrom(image);
+        this.backups = new NativeImage[this.anims.length];
+        for (int i = 0; i < this.anims.length; i++) {
+            var anim = this.anims[i];
+            this.backups[i] = pool.acquire(image.getFormat(), anim.width, anim.height);
+            Utilities.copy(image, anim.targetX, anim.targetY, anim.width, anim.height, this.backups[i], 0, 0);
+        }
+        // Everything outside the animated regions is never redrawn, so the full original is no longer needed
+        target.close();
+        this.dirty = new boolean[this.anims.length];
+        this.drawnStates = new long[this.anims.length];
+
+        this.startTick = tick;
+        this.lastTick = tick;
+        this.lastBindTick = tick;
+        updateAndDraw(this.getImage(), tick, true);
+        this.uploadSink.upload(this, this.getImage(), 0, 0, this.getImage().getWidth(), this.getImage().getHeight());
+        Arrays.fill(this.dirty, false);
+        this.nextChangeTick = tick + getTicksUntilChange();
     }
 
-    public boolean canLoop() {
-        for (var anim : anims) {
-            if (!anim.isOnFrameZero()) {
-                return false;
+    // Orders animations the way they are drawn in. Draws go from top to bottom for sequential memory access, wherever that
+    // does not change which of two overlapping animations ends up on top. Animations playing exactly like another one
+    // which nothing is drawn over copy its pixels once it has been drawn, rather than drawing (or blending) them again
+    private static DrawList compileDrawList(Animation[] declared) {
+        final int count = declared.length;
+        int[] declaredLeaders = new int[count];
+        Arrays.fill(declaredLeaders, -1);
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < i; j++) {
+                if (declaredLeaders[j] < 0 && declared[j].playsLike(declared[i]) && !overlapsAnyOther(declared, j)) {
+                    declaredLeaders[i] = j;
+                    break;
+                }
+            }
+        }
+
+        var order = new IntArrayList(count);
+        for (int i = 0; i < count; i++) {
+            var anim = declared[i];
+            // Must come after everything it overlaps that was declared before it, and after its leader
+            int pos = 0;
+            for (int k = 0; k < order.size(); k++) {
+                int other = order.getInt(k);
+                if (declared[other].overlaps(anim) || declaredLeaders[i] == other) {
+                    pos = k + 1;
+                }
+            }
+
+            while (pos < order.size()) {
+                var next = declared[order.getInt(pos)];
+                if (next.targetY > anim.targetY || (next.targetY == anim.targetY && next.targetX > anim.targetX)) break;
+                pos++;
             }
+            order.add(pos, i);
         }
-        // All animations for this texture are at zero again, so the frame counter can be reset
-        return true;
+
+        var anims = new Animation[count];
+        int[] positions = new int[count];
+        for (int k = 0; k < count; k++) {
+            anims[k] = declared[order.getInt(k)];
+            positions[order.getInt(k)] = k;
+        }
+
+        int[] leaders = new int[count];
+        for (int k = 0; k < count; k++) {
+            int leader = declaredLeaders[order.getInt(k)];
+            leaders[k] = leader < 0 ? -1 : positions[leader];
+        }
+        return new DrawList(anims, leaders);
+    }
+
+    private static boolean overlapsAnyOther(Animation[] anims, int index) {
+        for (int i = 0; i < anims.length; i++) {
+            if (i != index && anims[i].overlaps(anims[index])) return true;
+        }
+        return false;
     }
 
-    public boolean updateAndDraw(NativeImage image, boolean force) {
+    // Redraws all animations as they are on the given tick of the animation clock, should any of them look different
+    // than they currently do. As animation state is derived from the tick alone, any tick may be jumped to directly
+    public boolean updateAndDraw(NativeImage image, long tick, boolean force) {
+        var composite = this.composite(image, tick, force);
+        composite.recordTo(this.metrics);
+        return composite.changed();
+    }
+
+    // Does the work of updateAndDraw without recording it, so that it may be run off the render thread
+    private Composite composite(NativeImage image, long tick, boolean force) {
+        this.drawnTick = tick;
         boolean changed = false;
+        for (int i = 0; i < anims.length; i++) {
+            long state = anims[i].getStateAt(tick - this.startTick);
+            if (force || anims[i].isDifferent(drawnStates[i], state)) {
+                dirty[i] = true;
+                changed = true;
+            }
+            drawnStates[i] = state;
+        }
 
-        if (canLoop()) {
-            if (frame > 0) {
-                frame = 0;
+        if (!changed && !force) {
+            return Composite.NONE;
+        }
+
+        long start = System.nanoTime();
+        long copied = 0;
+        long blended = 0;
+        for (int i = 0; i < anims.length; i++) {
+            var anim = anims[i];
+            Utilities.copy(this.backups[i], 0, 0, anim.width, anim.height, image, anim.targetX, anim.targetY);
+            copied += (long) anim.width * anim.height;
+        }
+
+        for (int i = 0; i < anims.length; i++) {
+            var anim = anims[i];
+            if (leaders[i] >= 0) {
+                var leader = anims[leaders[i]];
+                Utilities.copy(image, leader.targetX, leader.targetY, anim.width, anim.height, image, anim.targetX, anim.targetY);
+                copied += (long) anim.width * anim.height;
+            } else if (anim.draw(image, drawnStates[i])) {
+                blended += (long) anim.width * anim.height;
+            } else {
+                copied += (long) anim.width * anim.height;
             }
-        } else if (frame <= 0) {
-            changed = true;
+        }
+        return new Composite(changed, true, System.nanoTime() - start, copied, blended);
+    }
+
+    // Brings the texture up to date with the given tick of the animation clock, returning the amount of bytes uploaded
+    public long tick(long tick) {
+        long uploaded = this.finishPending();
+        if (this.updateAndDraw(this.getImage(), tick, false)) {
+            uploaded += this.uploadDirty();
+        }
+        this.metrics.recordTick(tick - this.lastTick, uploaded);
+
+        this.lastTick = tick;
+        this.nextChangeTick = tick + getTicksUntilChange();
+        return uploaded;
+    }
+
+    // Brings the texture up to date like tick(), but composites frames one change ahead on the given executor, so that
+    // the render thread only swaps in and uploads finished frames. Must not be called while a composite is in flight.
+    // Frames are only composited for ticks that are multiples of the tick interval, the ticks the texture is visited on
+    public long tickPipelined(long tick, Executor compositor, int tickInterval) {
+        long uploaded;
+        if (this.pending != null) {
+            uploaded = this.finishPending();
+            this.metrics.recordTick(tick - this.lastTick, uploaded);
+            this.lastTick = tick;
+        } else {
+            // Nothing was prepared ahead, such as right after creation or waking up, so this frame is drawn in place
+            uploaded = this.tick(tick);
+        }
+
+        int ticksUntilChange = getTicksUntilChange();
+        if (ticksUntilChange == Integer.MAX_VALUE) {
+            this.nextChangeTick = Long.MAX_VALUE;
+            return uploaded;
         }
 
+        // A frame shown late is followed by the one for the earliest tick still ahead, catching up to the clock
+        long next = Math.max(this.drawnTick + ticksUntilChange, tick + 1);
+        next = Math.floorDiv(next + tickInterval - 1, tickInterval) * tickInterval;
+        this.nextChangeTick = next;
+
+        if (this.backBuffer == null) {
+            var image = this.getImage();
+            this.backBuffer = new NativeImage(image.getFormat(), image.getWidth(), image.getHeight(), false);
+            this.backBuffer.copyFrom(image);
+        }
+        final var back = this.backBuffer;
+        final long target = next;
+        this.pending = CompletableFuture.supplyAsync(() -> this.composite(back, target, false), compositor);
+        return uploaded;
+    }
+
+    // Whether a frame is still being composited off the render thread, in which case the texture may not be ticked
+    public boolean isCompositeInFlight() {
+        return this.pending != null && !this.pending.isDone();
+    }
+
+    // Waits for the frame being composited ahead, if any, then swaps it in and uploads the regions that changed
+    private long finishPending() {
+        if (this.pending == null) return 0;
+
+        Composite composite;
+        try {
+            composite = this.pending.join();
+        } catch (RuntimeException e) {
+            Animatica.LOG.error("Failed to composite animated texture '{}'", this.id, e);
+            this.pending = null;
+            // The drawn states may no longer match what is shown, so the frame is drawn in place instead
+            this.updateAndDraw(this.getImage(), this.drawnTick, true);
+            return this.uploadDirty();
+        }
+        this.pending = null;
+        // Recorded here rather than by the compositor, as metrics are only ever touched on the render thread
+        composite.recordTo(this.metrics);
+
+        if (!composite.changed() || this.backBuffer == null) return 0;
+
+        var front = this.getImage();
+        ((NativeImageBackedTextureAccessor) this).animatica$setImage(this.backBuffer);
+        // The previous frame becomes the back buffer; its animated regions are redrawn in full by the next composite
+        this.backBuffer = front;
+        return this.uploadDirty();
+    }
+
+    // Lets the frame being composited ahead finish, without showing it, before the texture's buffers are let go of
+    private void cancelPending() {
+        if (this.pending == null) return;
+
+        try {
+            this.pending.join();
+        } catch (RuntimeException ignored) {
+        }
+        this.pending = null;
+    }
+
+    public long getNextChangeTick() {
+        return nextChangeTick;
+    }
+
+    public long getLastTick() {
+        return lastTick;
+    }
+
+    public long getLastBindTick() {
+        return lastBindTick;
+    }
+
+    public void markBound(long tick) {
+        this.lastBindTick = tick;
+    }
+
+    public boolean isDormant() {
+        return dormant;
+    }
+
+    public void setDormant(boolean dormant) {
+        this.dormant = dormant;
+    }
+
+    public long getBakedBytes() {
+        long bytes = 0;
         for (var anim : anims) {
-            if (anim.isChanged()) {
-                changed = true;
-                break;
-            }
+            bytes += anim.getBakedBytes();
         }
+        return bytes;
+    }
+
+    public TextureMetrics getMetrics() {
+        return metrics;
+    }
 
-        if (changed || force) {
-            image.copyFrom(this.original);
+    // The id this texture is registered under
+    public Identifier getId() {
+        return id;
+    }
 
-            Phase phase;
-            for (var anim : anims) {
-                phase = anim.getCurrentPhase();
-                if (phase instanceof InterpolatedPhase iPhase) {
-                    Utilities.blendCopy(anim.sourceTexture, 0, iPhase.prevV, 0, iPhase.v, anim.width, anim.height, image, anim.targetX, anim.targetY, iPhase.blend.getBlend(anim.getPhaseFrame()));
-                } else {
-                    Utilities.copy(anim.sourceTexture, 0, phase.v, anim.width, anim.height, image, anim.targetX, anim.targetY);
+    private int getTicksUntilChange() {
+        int ticks = Integer.MAX_VALUE;
+        for (int i = 0; i < anims.length; i++) {
+            ticks = Math.min(ticks, anims[i].getTicksUntilChange(drawnStates[i]));
+        }
+        return ticks;
+    }
+
+    // Sends only the target regions of animations that were redrawn to the upload sink, skipping
+    // regions that are entirely contained within another region being uploaded
+    public long uploadDirty() {
+        var image = this.getImage();
+        long uploaded = 0;
+        for (int i = 0; i < anims.length; i++) {
+            if (dirty[i] && !isCoveredByOtherDirty(i)) {
+                var anim = anims[i];
+                this.uploadSink.upload(this, image, anim.targetX, anim.targetY, anim.width, anim.height);
+                uploaded += (long) anim.width * anim.height * image.getFormat().getChannelCount();
+            }
+        }
+        Arrays.fill(dirty, false);
+        return uploaded;
+    }
+
+    private boolean isCoveredByOtherDirty(int index) {
+        var anim = anims[index];
+        for (int i = 0; i < anims.length; i++) {
+            if (i == index || !dirty[i]) continue;
+
+            var other = anims[i];
+            if (other.targetX <= anim.targetX && other.targetY <= anim.targetY &&
+                    other.targetX + other.width >= anim.targetX + anim.width &&
+                    other.targetY + other.height >= anim.targetY + anim.height) {
+                // Identical regions are only uploaded by the first of them
+                boolean identical = other.targetX == anim.targetX && other.targetY == anim.targetY &&
+                        other.width == anim.width && other.height == anim.height;
+                if (!identical || i < index) {
+                    return true;
                 }
             }
         }
+        return false;
+    }
+
+    // Closes this texture, handing its image buffers to the pool instead of freeing them. Only the CPU side is released:
+    // the texture must already be removed from the texture manager, which deletes its GL texture
+    public void releaseTo(ImagePool pool) {
+        if (this.closed) return;
+        this.closed = true;
+        this.cancelPending();
 
         for (var anim : anims) {
-            anim.advance();
+            anim.close();
         }
-        frame++;
 
-        return changed;
-    }
+        for (var backup : backups) {
+            pool.release(backup);
+        }
+        if (this.backBuffer != null) {
+            pool.release(this.backBuffer);
+            this.backBuffer = null;
+        }
 
-    public void tick() {
-        if (this.updateAndDraw(this.getImage(), false)) {
-            this.upload();
+        var image = this.getImage();
+        if (image != null) {
+            // Detached first, as the texture would otherwise free it
+            ((NativeImageBackedTextureAccessor) this).animatica$setImage(null);
+            pool.release(image);
         }
     }
 
+    // May be called more than once, such as by both the texture manager and the loader
     @Override
     public void close() {
+        if (this.closed) return;
+        this.closed = true;
+        this.cancelPending();
+
         for (var anim : anims) {
             anim.close();
         }
 
-        this.original.close();
+        for (var backup : backups) {
+            backup.close();
+        }
+        if (this.backBuffer != null) {
+            this.backBuffer.close();
+            this.backBuffer = null;
+        }
         super.close();
     }
 
-    // Represents an active animation from an animation meta file; progresses through phases while being drawn
+    // Represents an active animation from an animation meta file; progresses through phases while being drawn.
+    // A phase is a period of time in which one frame is shown (loosely defined by the animation file's "tile"s),
+    // or in which one frame is blended into the next. Phases are compiled into flat arrays indexed by phase.
+    // Animations are immutable once baked: their state at any tick is computed from the tick alone, and passed
+    // around as a long packing the active phase (upper 32 bits) and how far into it the animation is (lower 32 bits)
     public static class Animation implements AutoCloseable {
-        private final List<Phase> phases;
+        // Animations with loops no longer than this find their phase with a direct lookup table instead of a binary search
+        private static final int MAX_PHASE_TABLE_LENGTH = 256;
+
+        private final SharedImageCache.SharedImage source;
+        // Only the frames shown by the animation, each stored once, should that take much less memory than the source
+        // it was declared with. Otherwise the declared source itself
         public final NativeImage sourceTexture;
+        // Only compared by identity, to tell whether two animations were declared with the same source
+        private final SharedImageCache.SharedImage declaredSource;
+        // Pre-blended frames of interpolated phases, stacked vertically; null if they are blended every tick
+        private @Nullable NativeImage bakedFrames = null;
         public final int targetX;
         public final int targetY;
         public final int width;
         public final int height;
         private final int duration;
 
-        private int frame = 0;
-        private Phase currentPhase = null;
-        private int phaseFrame = 0;
-        private boolean changed = true;
-
-        // Assembles all animation phases for one texture animation being baked
-        public Animation(@NotNull AnimationMeta meta, @NotNull ResourceManager resources) throws IOException {
+        // The frame of the loop each phase starts on, in ascending order
+        private final int[] phaseStarts;
+        private final int[] phaseDurations;
+        // The v coordinate of the frame shown by each phase, or that interpolated phases blend into
+        private final int[] phaseVs;
+        // The v coordinate of the frame that interpolated phases blend from, same as the phase's v for static phases
+        private final int[] phasePrevVs;
+        private final boolean[] phaseInterpolated;
+        // Where each phase's frames begin in the baked frames, or -1 if they are not baked
+        private final int[] phaseBakedVs;
+        // The phase active on each frame of the loop, null for loops longer than MAX_PHASE_TABLE_LENGTH
+        private final short @Nullable [] framePhases;
+
+        // Assembles all animation phases for one texture animation, taking ownership of its source texture reference
+        public Animation(@NotNull AnimationMeta meta, @NotNull SharedImageCache.SharedImage source) throws IOException {
             this.targetX = meta.targetX();
             this.targetY = meta.targetY();
             this.width = meta.width();
             this.height = meta.height();
 
-            try (var source = resources.getResourceOrThrow(meta.source()).getInputStream()) {
-                this.sourceTexture = NativeImage.read(source);
+            this.declaredSource = source;
+            var sourceImage = source.get();
+            // Validated once here so that drawing never has to read outside the source texture
+            if (sourceImage.getWidth() < this.width || sourceImage.getHeight() < this.height) {
+                source.close();
+                throw new IOException(String.format("Animation source '%s' is smaller than its animated area", meta.source()));
             }
 
-            ObjectList<Phase> phases = new ObjectArrayList<>();
-            int duration = 0;
+            var phaseDurations = new IntArrayList();
+            var phaseVs = new IntArrayList();
+            var phasePrevVs = new IntArrayList();
+            var phaseInterpolated = new BooleanArrayList();
 
-            final int textureFrameCount = (int)Math.floor((float) sourceTexture.getHeight() / meta.height());
+            final int textureFrameCount = (int)Math.floor((float) sourceImage.getHeight() / meta.height());
             final int animFrameCount = Math.max(textureFrameCount, meta.getGreatestUsedFrame() + 1);
 
             // The int array stored for each frame must contain the frame mapping and duration
             List<int[]> frames = new ObjectArrayList<>();
             for (int f = 0; f < animFrameCount; f++) {
-                if (f >= textureFrameCount && !meta.frameMapping().containsKey(f)) {
+                if (f >= textureFrameCount && !meta.hasFrameMapping(f)) {
                     continue;
                 }
 
                 frames.add(new int[] {
-                        meta.frameMapping().getOrDefault(f, f),
-                        meta.frameDurations().getOrDefault(f, meta.defaultFrameDuration())
+                        meta.mapFrame(f),
+                        meta.getFrameDuration(f)
                 });
             }
 
@@ -180,121 +581,381 @@ public class AnimatedTexture extends NativeImageBackedTexture {
                 int v = getVForFrame(fMap, textureFrameCount);
                 int nextV = getVForFrame(frames.get(Math.floorMod(i + 1, frames.size()))[0], textureFrameCount);
 
+                // Phases which would never be active are left out entirely
                 if (meta.interpolate()) {
                     if (meta.interpolationDelay() > 0) {
                         // Adds a static version of the current phase as a "delay" before the next interpolated phase (if specified in animation)
-                        phases.add(new Phase(meta.interpolationDelay(), v));
-                        duration += meta.interpolationDelay();
+                        phaseDurations.add(meta.interpolationDelay());
+                        phaseVs.add(v);
+                        phasePrevVs.add(v);
+                        phaseInterpolated.add(false);
                     }
 
                     // Add interpolated animation phase
                     final int interpolatedDuration = fDuration - meta.interpolationDelay();
-                    phases.add(new InterpolatedPhase(interpolatedDuration, v, nextV, (phaseFrame) -> ((float) phaseFrame / interpolatedDuration)));
-                    duration += interpolatedDuration;
-                } else {
-                    phases.add(new Phase(fDuration, v));
-                    duration += fDuration;
+                    if (interpolatedDuration > 0) {
+                        phaseDurations.add(interpolatedDuration);
+                        phaseVs.add(nextV);
+                        phasePrevVs.add(v);
+                        phaseInterpolated.add(true);
+                    }
+                } else if (fDuration > 0) {
+                    phaseDurations.add(fDuration);
+                    phaseVs.add(v);
+                    phasePrevVs.add(v);
+                    phaseInterpolated.add(false);
                 }
             }
 
+            if (phaseDurations.isEmpty()) {
+                source.close();
+                throw new IOException(String.format("Animation from '%s' has no frames", meta.source()));
+            }
+
+            canonicalizeFrames(sourceImage, phaseVs, phasePrevVs);
+            mergePhases(phaseDurations, phaseVs, phasePrevVs, phaseInterpolated);
+
+            var compact = compactFrames(sourceImage, phaseVs, phasePrevVs);
+            if (compact != null) {
+                source.close();
+                this.source = new SharedImageCache.SharedImage(compact);
+            } else {
+                this.source = source;
+            }
+            this.sourceTexture = this.source.get();
+
+            this.phaseDurations = phaseDurations.toIntArray();
+            this.phaseVs = phaseVs.toIntArray();
+            this.phasePrevVs = phasePrevVs.toIntArray();
+            this.phaseInterpolated = phaseInterpolated.toBooleanArray();
+            this.phaseStarts = new int[this.phaseDurations.length];
+
+            int duration = 0;
+            for (int p = 0; p < this.phaseDurations.length; p++) {
+                this.phaseStarts[p] = duration;
+                duration += this.phaseDurations[p];
+            }
             this.duration = duration;
-            this.phases = ObjectLists.unmodifiable(phases);
 
-            updateCurrentPhase();
+            if (duration <= MAX_PHASE_TABLE_LENGTH) {
+                this.framePhases = new short[duration];
+                for (int p = 0; p < this.phaseDurations.length; p++) {
+                    Arrays.fill(this.framePhases, this.phaseStarts[p], this.phaseStarts[p] + this.phaseDurations[p], (short) p);
+                }
+            } else {
+                this.framePhases = null;
+            }
+
+            this.phaseBakedVs = new int[this.phaseDurations.length];
+            Arrays.fill(this.phaseBakedVs, -1);
+        }
+
+        // Bakes this animation's interpolated frames, should they fit in the budget. Only done once it is known that the
+        // animation draws its own pixels rather than copying those of another, and before it is drawn for the first time
+        public void bake(@NotNull BakeBudget budget) {
+            if (this.bakedFrames == null) {
+                this.bakedFrames = bakeInterpolatedFrames(budget);
+            }
         }
 
-        public void updateCurrentPhase() {
-            changed = false;
-            int progress = frame;
+        // Points phases showing a frame with exactly the same pixels as an earlier frame of the source at that earlier frame
+        private void canonicalizeFrames(NativeImage image, IntArrayList phaseVs, IntArrayList phasePrevVs) {
+            var canonicalVs = new Int2IntOpenHashMap();
+            var vsByHash = new Long2ObjectOpenHashMap<IntArrayList>();
+            for (var vs : List.of(phaseVs, phasePrevVs)) {
+                for (int p = 0; p < vs.size(); p++) {
+                    int v = vs.getInt(p);
+                    if (!canonicalVs.containsKey(v)) {
+                        canonicalVs.put(v, findCanonicalFrame(image, v, vsByHash));
+                    }
+                    vs.set(p, canonicalVs.get(v));
+                }
+            }
+        }
+
+        private int findCanonicalFrame(NativeImage image, int v, Long2ObjectMap<IntArrayList> vsByHash) {
+            var candidates = vsByHash.computeIfAbsent(Utilities.hashRegion(image, 0, v, this.width, this.height), hash -> new IntArrayList());
+            for (int i = 0; i < candidates.size(); i++) {
+                int candidate = candidates.getInt(i);
+                if (Utilities.regionsEqual(image, 0, candidate, image, 0, v, this.width, this.height)) {
+                    return candidate;
+                }
+            }
+            candidates.add(v);
+            return v;
+        }
+
+        // Shows interpolated phases blending between two identical frames as static phases, and merges static phases
+        // showing the same frame one after another into a single phase, so that no redraw happens between them
+        private static void mergePhases(IntArrayList phaseDurations, IntArrayList phaseVs, IntArrayList phasePrevVs, BooleanArrayList phaseInterpolated) {
+            int merged = 0;
+            for (int p = 0; p < phaseDurations.size(); p++) {
+                int v = phaseVs.getInt(p);
+                boolean interpolated = phaseInterpolated.getBoolean(p) && phasePrevVs.getInt(p) != v;
+
+                if (!interpolated && merged > 0 && !phaseInterpolated.getBoolean(merged - 1) && phaseVs.getInt(merged - 1) == v) {
+                    phaseDurations.set(merged - 1, phaseDurations.getInt(merged - 1) + phaseDurations.getInt(p));
+                    continue;
+                }
+
+                phaseDurations.set(merged, phaseDurations.getInt(p));
+                phaseVs.set(merged, v);
+                phasePrevVs.set(merged, interpolated ? phasePrevVs.getInt(p) : v);
+                phaseInterpolated.set(merged, interpolated);
+                merged++;
+            }
+
+            phaseDurations.size(merged);
+            phaseVs.size(merged);
+            phasePrevVs.size(merged);
+            phaseInterpolated.size(merged);
+        }
+
+        // Copies the frames shown by the phases into an image of their own, remapping the phases onto it. Only done when
+        // that at least halves the memory used, since the declared source may still be kept alive by other animations
+        private @Nullable NativeImage compactFrames(NativeImage image, IntArrayList phaseVs, IntArrayList phasePrevVs) {
+            var usedVs = new IntLinkedOpenHashSet();
+            usedVs.addAll(phaseVs);
+            usedVs.addAll(phasePrevVs);
+
+            if ((long) usedVs.size() * this.width * this.height * 2 > (long) image.getWidth() * image.getHeight()) {
+                return null;
+            }
+
+            var compact = new NativeImage(image.getFormat(), this.width, usedVs.size() * this.height, false);
+            var compactVs = new Int2IntOpenHashMap();
+            int compactV = 0;
+            for (var it = usedVs.iterator(); it.hasNext(); compactV += this.height) {
+                int v = it.nextInt();
+                Utilities.copy(image, 0, v, this.width, this.height, compact, 0, compactV);
+                compactVs.put(v, compactV);
+            }
+
+            for (int p = 0; p < phaseVs.size(); p++) {
+                phaseVs.set(p, compactVs.get(phaseVs.getInt(p)));
+                phasePrevVs.set(p, compactVs.get(phasePrevVs.getInt(p)));
+            }
+            return compact;
+        }
+
+        // Pre-computes every blended frame of this animation's changing interpolated phases, should they fit in the budget
+        private @Nullable NativeImage bakeInterpolatedFrames(BakeBudget budget) {
+            int frameCount = 0;
+            for (int p = 0; p < phaseDurations.length; p++) {
+                if (hasChangingV(p)) {
+                    frameCount += phaseDurations[p];
+                }
+            }
+
+            long bytes = (long) frameCount * this.width * this.height * sourceTexture.getFormat().getChannelCount();
+            if (frameCount <= 0 || (long) frameCount * this.height > Integer.MAX_VALUE || !budget.tryReserve(bytes)) {
+                return null;
+            }
 
-            for (var phase : phases) {
-                progress -= phase.duration; // Take away as much progress as each phase is long, until progress is below zero
-                if (progress < 0) {
-                    if (currentPhase != phase) {
-                        // Marks baking anim as changed should it be in a new, unique phase
-                        changed = true;
+            var baked = new NativeImage(sourceTexture.getFormat(), this.width, frameCount * this.height, false);
+            int bakedV = 0;
+            for (int p = 0; p < phaseDurations.length; p++) {
+                if (hasChangingV(p)) {
+                    phaseBakedVs[p] = bakedV;
+                    for (int f = 0; f < phaseDurations[p]; f++) {
+                        Utilities.blendCopy(sourceTexture, 0, phasePrevVs[p], 0, phaseVs[p], this.width, this.height, baked, 0, bakedV, getBlend(p, f));
+                        bakedV += this.height;
                     }
-                    if (phase instanceof InterpolatedPhase iPhase) changed = iPhase.hasChangingV(); // Marks baking anim as changed should its current phase be changing
+                }
+            }
 
-                    this.currentPhase = phase;
-                    this.phaseFrame = phase.duration + progress; // Adding progress to the phase duration results in how far it is into the phase
+            return baked;
+        }
 
-                    return;
+        // Draws a state of this animation onto its target region of an image, returning whether it had to be blended
+        public boolean draw(NativeImage image, long state) {
+            final int p = getPhase(state);
+            final int phaseFrame = getPhaseFrame(state);
+            if (phaseInterpolated[p]) {
+                if (phaseBakedVs[p] >= 0 && this.bakedFrames != null) {
+                    Utilities.copy(this.bakedFrames, 0, phaseBakedVs[p] + phaseFrame * this.height, this.width, this.height, image, this.targetX, this.targetY);
+                } else {
+                    Utilities.blendCopy(this.sourceTexture, 0, phasePrevVs[p], 0, phaseVs[p], this.width, this.height, image, this.targetX, this.targetY, getBlend(p, phaseFrame));
+                    return true;
                 }
+            } else {
+                Utilities.copy(this.sourceTexture, 0, phaseVs[p], this.width, this.height, image, this.targetX, this.targetY);
             }
+            return false;
         }
 
-        public Phase getCurrentPhase() {
-            return currentPhase;
+        // Finds the phase active on a frame of the loop
+        public int getPhaseAt(int frame) {
+            if (framePhases != null) {
+                return framePhases[frame];
+            }
+
+            int index = Arrays.binarySearch(phaseStarts, frame);
+            // When not starting exactly on this frame, the phase is the one starting before the insertion point
+            return index >= 0 ? index : -index - 2;
         }
 
-        public int getPhaseFrame() {
-            return phaseFrame;
+        // Computes the state of this animation for any amount of ticks since it started, in constant or logarithmic time
+        public long getStateAt(long ticks) {
+            int frame = (int) Math.floorMod(ticks, (long) duration);
+            int phase = getPhaseAt(frame);
+            return packState(phase, frame - phaseStarts[phase]);
         }
 
-        public boolean isOnFrameZero() {
-            return frame <= 0;
+        // Whether two states of this animation look different from one another, judged by what they draw rather than
+        // where in the loop they are. States of different phases may look alike, such as an interpolated phase not
+        // having blended in any of its next frame yet, and so may consecutive states blending by the same weight
+        public boolean isDifferent(long state, long other) {
+            return !looksAlike(getPhase(state), getPhaseFrame(state), getPhase(other), getPhaseFrame(other));
         }
 
-        public boolean isChanged() {
-            return changed;
+        // The amount of ticks from a state until the next state which looks different, or Integer.MAX_VALUE if the
+        // animation never looks any different. Phases which start out looking the same as the one before are passed
+        // through, rather than redrawing on every phase change
+        public int getTicksUntilChange(long state) {
+            int p = getPhase(state);
+            int f = getPhaseFrame(state);
+            final int fromP = p;
+            final int fromF = f;
+
+            long ticks = 0;
+            for (int i = 0; i <= phaseDurations.length; i++) {
+                int next = getNextChangeInPhase(p, f);
+                ticks += next - f;
+                if (next < phaseDurations[p] || ticks >= Integer.MAX_VALUE) {
+                    return (int) Math.min(ticks, Integer.MAX_VALUE);
+                }
+
+                p = (p + 1) % phaseDurations.length;
+                f = 0;
+                if (!looksAlike(fromP, fromF, p, f)) {
+                    return (int) Math.min(ticks, Integer.MAX_VALUE);
+                }
+            }
+            // Every phase looks the same throughout
+            return Integer.MAX_VALUE;
         }
 
-        public void advance() {
-            frame++;
-            if (frame >= duration) {
-                frame = 0;
+        // The first frame after the given one within a phase that is blended by a different weight, or the phase's
+        // duration if there is none. Weights only ever increase over a phase, so it is found directly from the weight
+        private int getNextChangeInPhase(int phase, int phaseFrame) {
+            final int duration = phaseDurations[phase];
+            if (!phaseInterpolated[phase]) {
+                return duration;
+            }
+
+            final int weight = getWeight(phase, phaseFrame);
+            // The first frame to reach the next weight, then corrected for rounding of the blend factor
+            int next = (int) Math.min(duration, ((long) (weight + 1) * duration + 255) / 256);
+            next = Math.max(next, phaseFrame + 1);
+            while (next > phaseFrame + 1 && getWeight(phase, next - 1) != weight) {
+                next--;
             }
-            updateCurrentPhase();
+            while (next < duration && getWeight(phase, next) == weight) {
+                next++;
+            }
+            return next;
+        }
+
+        // Whether a frame of one phase draws exactly the same frames blended by the same weight as a frame of another
+        private boolean looksAlike(int phase, int phaseFrame, int otherPhase, int otherPhaseFrame) {
+            if (phase == otherPhase && phaseFrame == otherPhaseFrame) {
+                return true;
+            }
+
+            int weight = getWeight(phase, phaseFrame);
+            int otherWeight = getWeight(otherPhase, otherPhaseFrame);
+            // A blend with no weight shows only the frame blended from, just like a static phase
+            int v = weight == 0 ? phasePrevVs[phase] : phaseVs[phase];
+            int otherV = otherWeight == 0 ? phasePrevVs[otherPhase] : phaseVs[otherPhase];
+            return weight == otherWeight && v == otherV && phasePrevVs[phase] == phasePrevVs[otherPhase];
+        }
+
+        public int getDuration() {
+            return duration;
+        }
+
+        public boolean overlaps(Animation other) {
+            return this.targetX < other.targetX + other.width && other.targetX < this.targetX + this.width &&
+                    this.targetY < other.targetY + other.height && other.targetY < this.targetY + this.height;
+        }
+
+        // Whether this animation shows the same pixels as another on every tick, only at a different position
+        public boolean playsLike(Animation other) {
+            return this.declaredSource == other.declaredSource && this.width == other.width && this.height == other.height &&
+                    this.duration == other.duration && Arrays.equals(this.phaseStarts, other.phaseStarts) &&
+                    Arrays.equals(this.phaseDurations, other.phaseDurations) && Arrays.equals(this.phaseVs, other.phaseVs) &&
+                    Arrays.equals(this.phasePrevVs, other.phasePrevVs) && Arrays.equals(this.phaseInterpolated, other.phaseInterpolated);
+        }
+
+        // The amount of memory used by pre-blended frames, which was claimed from a bake budget
+        public long getBakedBytes() {
+            var baked = this.bakedFrames;
+            return baked != null ? (long) baked.getWidth() * baked.getHeight() * baked.getFormat().getChannelCount() : 0;
+        }
+
+        public static long packState(int phase, int phaseFrame) {
+            return ((long) phase << 32) | (phaseFrame & 0xFFFFFFFFL);
+        }
+
+        public static int getPhase(long state) {
+            return (int) (state >>> 32);
+        }
+
+        public static int getPhaseFrame(long state) {
+            return (int) state;
         }
 
         @Override
         public void close() {
-            this.sourceTexture.close();
+            this.source.close();
+            if (this.bakedFrames != null) {
+                this.bakedFrames.close();
+            }
         }
 
-        private int getVForFrame(int frame, int textureFrameCount) {
-            return MathHelper.clamp(frame * this.height, 0, (textureFrameCount - 1) * this.height);
+        private boolean hasChangingV(int phase) {
+            return phaseInterpolated[phase] && phasePrevVs[phase] != phaseVs[phase];
         }
-    }
 
-    // Represents a phase that an animation is in (loosely defined by the animation file's "tile"s)
-    // Base class represents the simplest possible type of animation phase, which only needs to generate
-    // one texture to be used over a period of time
-    public static class Phase {
-        public final int duration;
-        public final int v;
+        private float getBlend(int phase, int phaseFrame) {
+            return (float) phaseFrame / phaseDurations[phase];
+        }
 
-        public Phase(int duration, int v) {
-            this.duration = duration;
-            this.v = v;
+        // The weight a frame of a phase is blended with when drawn, always 0 for static phases
+        private int getWeight(int phase, int phaseFrame) {
+            return phaseInterpolated[phase] ? Utilities.getBlendWeight(getBlend(phase, phaseFrame)) : 0;
         }
 
-        @Override
-        public String toString() {
-            return "Animation Bakery Phase { v: "+this.v+" }";
+        private int getVForFrame(int frame, int textureFrameCount) {
+            return MathHelper.clamp(frame * this.height, 0, (textureFrameCount - 1) * this.height);
         }
     }
 
-    // A phase that blends between its previous phase and itself, requiring the generation of many
-    // more textures to construct the blend animation
-    public static class InterpolatedPhase extends Phase {
-        public final int prevV;
-        public final BlendInterpolator blend;
+    // The outcome of compositing a frame: whether it looks different, and the work drawing it took if it was drawn at all
+    private record Composite(boolean changed, boolean drawn, long nanos, long copied, long blended) {
+        static final Composite NONE = new Composite(false, false, 0, 0, 0);
 
-        public InterpolatedPhase(int duration, int v1, int v2, BlendInterpolator blend) {
-            super(duration, v2);
-            this.prevV = v1;
-            this.blend = blend;
+        void recordTo(TextureMetrics metrics) {
+            if (this.drawn) metrics.recordComposite(this.nanos, this.copied, this.blended);
         }
+    }
+
+    // Animations in the order they are drawn in, along with which earlier animation each one copies (if any)
+    private record DrawList(Animation[] anims, int[] leaders) {}
 
-        public boolean hasChangingV() {
-            return this.prevV != this.v;
+    // The decoded target image and baked animations of an animated texture that has yet to be created
+    public record Prepared(SharedImageCache.SharedImage image, Animation[] anims) implements AutoCloseable {
+        public AnimatedTexture create(Identifier id, long tick, ImagePool pool) {
+            return new AnimatedTexture(id, this.image, this.anims, tick, UploadSink.GL, pool);
         }
-    }
 
-    @FunctionalInterface
-    public interface BlendInterpolator {
-        float getBlend(int phaseFrame);
+        @Override
+        public void close() {
+            this.image.close();
+            for (var anim : anims) {
+                anim.close();
+            }
+        }
     }
 }
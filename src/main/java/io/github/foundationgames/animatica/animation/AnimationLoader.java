@@ -19,25 +19,45 @@ package io.github.foundationgames.animatica.animation;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 import io.github.foundationgames.animatica.Animatica;
+import io.github.foundationgames.animatica.debug.ReloadProfile;
+import io.github.foundationgames.animatica.debug.TickTexturesEvent;
+import io.github.foundationgames.animatica.util.IdentifierExtension;
+import io.github.foundationgames.animatica.util.Utilities;
 import io.github.foundationgames.animatica.util.exception.PropertyParseException;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.NativeImage;
 import net.minecraft.resource.Resource;
 import net.minecraft.resource.ResourceManager;
-import net.minecraft.resource.SynchronousResourceReloader;
+import net.minecraft.resource.ResourceReloader;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.profiler.Profiler;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.BiConsumer;
 
-public final class AnimationLoader implements SynchronousResourceReloader {
+public final class AnimationLoader implements ResourceReloader {
     public static final String[] ANIM_PATHS = {
             "animatica/anim",
             "mcpatcher/anim",
@@ -46,68 +66,472 @@ public final class AnimationLoader implements SynchronousResourceReloader {
 
     public static final AnimationLoader INSTANCE = new AnimationLoader();
 
-    private final Map<Identifier, Identifier> animationIds = new Object2ObjectOpenHashMap<>();
+    private final Map<Identifier, AnimatedTexture> texturesByTarget = new Object2ObjectOpenHashMap<>();
+    // Fingerprints of everything each current animated texture was built from, by target
+    private final Object2LongMap<Identifier> inputHashes = new Object2LongOpenHashMap<>();
+    // Buffers of the textures released while applying a reload, reused by the textures created right after
+    private final ImagePool imagePool = new ImagePool();
     private final Set<AnimatedTexture> animatedTextures = new ObjectOpenHashSet<>();
+    // Textures ordered by the tick their appearance next changes on, so that only those due are visited each tick
+    private final PriorityQueue<AnimatedTexture> schedule = new PriorityQueue<>(Comparator.comparingLong(AnimatedTexture::getNextChangeTick));
+    // Textures due on the current tick, most recently bound or longest overdue first
+    private final ObjectArrayList<AnimatedTexture> dueTextures = new ObjectArrayList<>();
+    // Every tick a texture has been overdue for counts as if it had been bound a tick more recently, so that textures
+    // which are still visible but seldom bound again are not delayed forever by ones bound on every tick
+    private static final Comparator<AnimatedTexture> BIND_PRIORITY = Comparator
+            .comparingLong((AnimatedTexture texture) -> texture.getLastBindTick() - texture.getNextChangeTick()).reversed()
+            .thenComparingLong(AnimatedTexture::getNextChangeTick);
+    private long tick = 0;
+    // Incremented on every reload, invalidating the animated textures cached on identifiers
+    private int generation = 0;
+
+    private long sleptTextures = 0;
+    private long wokenTextures = 0;
+    private long dormantTicks = 0;
+    private long deferredUpdates = 0;
+    private long lateComposites = 0;
+    // Thread frames are composited on in pipelined mode, started once first needed
+    private @Nullable ExecutorService compositor = null;
+    // Cost of the most recent pass over due textures, for the debug overlay
+    private int lastPassTextures = 0;
+    private long lastPassNanos = 0;
+    private long lastPassUploaded = 0;
 
     private AnimationLoader() {
     }
 
-    private static void findAllMCPAnimations(ResourceManager manager, BiConsumer<Identifier, Resource> action) {
+    private static void findAllMCPAnimations(ResourceManager manager, ReloadProfile profile, BiConsumer<Identifier, Resource> action) {
         for (var path : ANIM_PATHS) {
-            manager.findResources(path, p -> p.getPath().endsWith(".properties")).forEach(action);
+            try (var section = profile.begin(ReloadProfile.Stage.DISCOVER, path)) {
+                // Animation files are found even if their names contain characters vanilla does not allow
+                Utilities.withLenientIdentifiers(() -> manager.findResources(path, p -> p.getPath().endsWith(".properties"))).forEach(action);
+            }
         }
     }
 
     public @Nullable Identifier getAnimationId(Identifier id) {
-        return animationIds.get(id);
+        var texture = texturesByTarget.get(id);
+        return texture != null ? texture.getId() : null;
+    }
+
+    // Gets the animated texture which replaces the texture of the given id. Only the first lookup of each identifier
+    // instance after a reload hashes it, later ones read the result cached on the instance itself
+    public @Nullable AnimatedTexture getAnimatedTexture(Identifier id) {
+        var cached = (IdentifierExtension) id;
+        if (cached.animatica$getGeneration() != this.generation) {
+            cached.animatica$setAnimatedTexture(this.generation, texturesByTarget.get(id));
+        }
+        return cached.animatica$getAnimatedTexture();
+    }
+
+    // Called on the render thread whenever an animated texture is about to be used for rendering. Dormant
+    // textures are brought up to date with the current tick straight away and scheduled again
+    public void onBind(AnimatedTexture texture) {
+        texture.markBound(tick);
+
+        if (texture.isDormant()) {
+            this.wokenTextures++;
+            this.dormantTicks += tick - texture.getLastTick();
+
+            texture.setDormant(false);
+            texture.tick(tick);
+            schedule.add(texture);
+        }
+    }
+
+    // How many times textures stopped updating because they were not being used
+    public long getSleptTextures() {
+        return sleptTextures;
+    }
+
+    // How many times textures resumed updating because they were used again
+    public long getWokenTextures() {
+        return wokenTextures;
+    }
+
+    // The total amount of ticks that woken textures had not been updated for
+    public long getDormantTicks() {
+        return dormantTicks;
+    }
+
+    // How many times texture updates were put off until the next tick because the upload budget was used up
+    public long getDeferredUpdates() {
+        return deferredUpdates;
+    }
+
+    // How many times textures were due while their next frame was still being composited, and were shown a tick late
+    public long getLateComposites() {
+        return lateComposites;
+    }
+
+    public Collection<AnimatedTexture> getAnimatedTextures() {
+        return Collections.unmodifiableSet(animatedTextures);
+    }
+
+    public int getLastPassTextures() {
+        return lastPassTextures;
+    }
+
+    public long getLastPassNanos() {
+        return lastPassNanos;
+    }
+
+    public long getLastPassUploaded() {
+        return lastPassUploaded;
     }
 
     public void tickTextures() {
         if (!RenderSystem.isOnRenderThread()) {
             RenderSystem.recordRenderCall(this::tickTextures);
         } else {
-            for (var texture : animatedTextures) {
-                texture.tick();
+            tick++;
+            // The animation clock keeps running on skipped ticks, so animations play at the same speed regardless
+            if (tick % Animatica.TICK_RATE_DIVISOR.get() != 0) {
+                return;
             }
+
+            final long start = System.nanoTime();
+            var event = new TickTexturesEvent();
+            event.begin();
+            final int idleTicks = Animatica.IDLE_TICKS.get();
+            final long uploadBudget = Animatica.UPLOAD_BUDGET_KB.get() * 1024L;
+            final int tickInterval = Animatica.TICK_RATE_DIVISOR.get();
+            final Executor compositor = Animatica.PIPELINED_COMPOSITING.get() ? getCompositor() : null;
+
+            AnimatedTexture texture;
+            while ((texture = schedule.peek()) != null && texture.getNextChangeTick() <= tick) {
+                // Must be removed while ticking, as its position in the queue depends on it
+                schedule.poll();
+
+                if (idleTicks > 0 && tick - texture.getLastBindTick() > idleTicks) {
+                    // Left off the schedule until next bound, when it catches up to the correct frame
+                    texture.setDormant(true);
+                    this.sleptTextures++;
+                    continue;
+                }
+
+                dueTextures.add(texture);
+            }
+
+            if (uploadBudget > 0) {
+                dueTextures.sort(BIND_PRIORITY);
+            }
+
+            long uploaded = 0;
+            int deferred = 0;
+            for (int i = 0; i < dueTextures.size(); i++) {
+                texture = dueTextures.get(i);
+                if (texture.isCompositeInFlight()) {
+                    // The render thread never waits on the compositor; the frame is shown once it is done instead
+                    this.lateComposites++;
+                } else if (uploadBudget <= 0 || i == 0 || uploaded < uploadBudget) {
+                    // At least one texture is always updated, so that progress is made with any budget
+                    uploaded += compositor != null ? texture.tickPipelined(tick, compositor, tickInterval) : texture.tick(tick);
+                } else {
+                    // Still due, so it is first in line on the next tick and catches up to the frame of that tick
+                    deferred++;
+                }
+                schedule.add(texture);
+            }
+
+            this.deferredUpdates += deferred;
+            this.lastPassTextures = dueTextures.size();
+            this.lastPassNanos = System.nanoTime() - start;
+            this.lastPassUploaded = uploaded;
+            if (event.shouldCommit()) {
+                event.tick = tick;
+                event.dueTextures = dueTextures.size();
+                event.deferredTextures = deferred;
+                event.uploaded = uploaded;
+                event.commit();
+            }
+            dueTextures.clear();
         }
     }
 
+    private Executor getCompositor() {
+        if (this.compositor == null) {
+            this.compositor = Executors.newSingleThreadExecutor(runnable -> {
+                var thread = new Thread(runnable, "Animatica Compositor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.compositor;
+    }
+
     @Override
-    public void reload(ResourceManager manager) {
-        this.animatedTextures.clear();
-        this.animationIds.clear();
+    public CompletableFuture<Void> reload(Synchronizer synchronizer, ResourceManager manager, Profiler prepareProfiler, Profiler applyProfiler, Executor prepareExecutor, Executor applyExecutor) {
+        var budget = new BakeBudget(Animatica.BAKE_INTERPOLATION.get() ? Animatica.BAKE_BUDGET_MB.get() * 1024L * 1024L : 0);
+        var profile = new ReloadProfile();
+        // Taken up front, as the current textures belong to the render thread while the reload is being prepared
+        var current = getReusableTextures();
 
+        return CompletableFuture.supplyAsync(() -> findAnimations(manager, budget.getTotal(), profile), prepareExecutor)
+                .thenCompose(discovery -> fingerprintImages(manager, discovery, !current.isEmpty(), profile, prepareExecutor))
+                .thenCompose(discovery -> prepareTextures(manager, discovery, current, budget, profile, prepareExecutor))
+                .thenCompose(synchronizer::whenPrepared)
+                .thenAcceptAsync(prepared -> apply(manager, prepared, budget, profile, applyProfiler), applyExecutor);
+    }
+
+    private Map<Identifier, Reusable> getReusableTextures() {
+        Map<Identifier, Reusable> reusable = new Object2ObjectOpenHashMap<>();
+        texturesByTarget.forEach((targetId, texture) ->
+                reusable.put(targetId, new Reusable(inputHashes.getLong(targetId), texture.getBakedBytes())));
+        return reusable;
+    }
+
+    // Discovers and parses every animation file, grouped by the texture they animate. The animation files are fingerprinted
+    // as well, to pick up what can be reused from the bake cache
+    private static Discovery findAnimations(ResourceManager manager, long settings, ReloadProfile profile) {
+        Map<Identifier, List<AnimationMeta>> animations = new Object2ObjectOpenHashMap<>();
         if (!Animatica.ANIMATED_TEXTURES.get()) {
-            return;
+            return new Discovery(animations, List.of(), Set.of(), settings, false, 0, null, null);
         }
+        final boolean cacheEnabled = Animatica.BAKE_CACHE.get();
+
+        // Each file is read once, for both fingerprinting and parsing
+        List<BakeCache.AnimationFile> files = new ObjectArrayList<>();
+        findAllMCPAnimations(manager, profile, (id, resource) -> {
+            try (var resourceInputStream = resource.getInputStream()) {
+                files.add(new BakeCache.AnimationFile(id, resource.getResourcePackName(), resourceInputStream.readAllBytes()));
+            } catch (IOException e) {
+                Animatica.LOG.error(e.getMessage());
+            }
+        });
 
-        var animations = new Object2ObjectOpenHashMap<Identifier, List<AnimationMeta>>();
+        final long propertiesHash = cacheEnabled ? BakeCache.hashProperties(files) : 0;
+        var cache = cacheEnabled ? BakeCache.read(BakeCache.getDefaultPath(), propertiesHash) : null;
 
-        findAllMCPAnimations(manager, (id, resource) -> {
-            try {
-                try (var resourceInputStream = resource.getInputStream()) {
-                    var ppt = new Properties();
-                    ppt.load(resourceInputStream);
+        List<AnimationMeta> metas;
+        if (cache != null) {
+            metas = cache.metas();
+        } else {
+            metas = new ObjectArrayList<>();
+            for (var file : files) {
+                try (var section = profile.begin(ReloadProfile.Stage.PARSE, file.id())) {
+                    metas.add(AnimationMeta.of(file.id(), file.contents()));
+                } catch (IOException | PropertyParseException e) {
+                    Animatica.LOG.error(e.getMessage());
+                }
+            }
+        }
+
+        Set<Identifier> imageIds = new ObjectLinkedOpenHashSet<>();
+        for (var anim : metas) {
+            var targetId = anim.target();
+            if (!animations.containsKey(targetId)) animations.put(targetId, new ObjectArrayList<>());
+            animations.get(targetId).add(anim);
 
-                    var anim = AnimationMeta.of(id, ppt);
+            imageIds.add(targetId);
+            imageIds.add(anim.source());
+        }
 
-                    var targetId = anim.target();
-                    if (!animations.containsKey(targetId)) animations.put(targetId, new ObjectArrayList<>());
-                    animations.get(targetId).add(anim);
+        return new Discovery(animations, metas, imageIds, settings, cacheEnabled, propertiesHash, null, cache);
+    }
+
+    // Fingerprints every texture used by animations, each as a separate task. This is only done up front when the
+    // fingerprints are needed before anything is decoded: to validate the bake cache, or to find current textures which
+    // are unchanged. Otherwise textures are fingerprinted from the same bytes they are decoded from
+    private static CompletableFuture<Discovery> fingerprintImages(ResourceManager manager, Discovery discovery, boolean reusing, ReloadProfile profile, Executor executor) {
+        if (discovery.cache() == null && !reusing) {
+            return CompletableFuture.completedFuture(discovery);
+        }
+
+        var tasks = new Object2ObjectLinkedOpenHashMap<Identifier, CompletableFuture<Long>>();
+        for (var id : discovery.imageIds()) {
+            tasks.put(id, CompletableFuture.supplyAsync(() -> {
+                try (var section = profile.begin(ReloadProfile.Stage.FINGERPRINT, id)) {
+                    return BakeCache.hashImage(manager, id);
+                }
+            }, executor));
+        }
+
+        return CompletableFuture.allOf(tasks.values().toArray(CompletableFuture[]::new)).thenApply(v -> {
+            // In the same order as the textures were found, which the combined fingerprint depends on
+            Object2LongMap<Identifier> imageHashes = new Object2LongLinkedOpenHashMap<>();
+            tasks.forEach((id, task) -> imageHashes.put(id, task.join().longValue()));
+
+            var cache = discovery.cache();
+            if (cache != null && !cache.hasImages(BakeCache.hashImages(imageHashes))) {
+                // The animation files are unchanged, but the textures they use have to be decoded again
+                cache.close();
+                cache = null;
+            }
+            return discovery.fingerprinted(imageHashes, cache);
+        });
+    }
+
+    // Decodes and bakes each animated texture as a separate task, so that they are spread across the worker executor.
+    // Textures built from exactly the same inputs as a current texture are not prepared at all, the current one is kept
+    private static CompletableFuture<PreparedReload> prepareTextures(ResourceManager manager, Discovery discovery, Map<Identifier, Reusable> current, BakeBudget budget, ReloadProfile profile, Executor executor) {
+        // Kept textures claim their baked frames from the budget before any new texture gets the chance to
+        Set<Identifier> reused = new ObjectOpenHashSet<>();
+        if (discovery.imageHashes() != null) {
+            var inputHashes = discovery.getInputHashes(discovery.imageHashes());
+            discovery.animations().forEach((targetId, metas) -> {
+                var texture = current.get(targetId);
+                if (texture != null && texture.inputHash() == inputHashes.getLong(targetId) && budget.tryReserve(texture.bakedBytes())) {
+                    reused.add(targetId);
+                }
+            });
+        }
+
+        var images = new SharedImageCache(manager, discovery.cache(), profile);
+        var tasks = new Object2ObjectOpenHashMap<Identifier, CompletableFuture<Optional<AnimatedTexture.Prepared>>>();
+        discovery.animations().forEach((targetId, metas) -> {
+            if (reused.contains(targetId)) return;
+
+            tasks.put(targetId, CompletableFuture.supplyAsync(() -> {
+                try (var section = profile.begin(ReloadProfile.Stage.PREPARE, targetId)) {
+                    return AnimatedTexture.tryPrepare(images, targetId, metas, budget);
+                } catch (RuntimeException e) {
+                    // One broken texture must not fail the whole resource reload
+                    Animatica.LOG.error("Could not prepare animated texture '{}'", targetId, e);
+                    return Optional.<AnimatedTexture.Prepared>empty();
+                }
+            }, executor));
+        });
+
+        return CompletableFuture.allOf(tasks.values().toArray(CompletableFuture[]::new)).thenApply(v -> {
+            var imageHashes = discovery.imageHashes();
+            if (imageHashes == null) {
+                // Not fingerprinted up front, so every texture was just decoded and fingerprinted along the way
+                imageHashes = new Object2LongLinkedOpenHashMap<>();
+                for (var id : discovery.imageIds()) {
+                    imageHashes.put(id, images.getFingerprint(id));
+                }
+            }
+
+            if (discovery.cacheEnabled()) {
+                if (discovery.cache() == null) {
+                    // Textures of kept animated textures were never decoded, so the cache can only be written without any
+                    if (reused.isEmpty()) writeBakeCache(discovery, images, BakeCache.hashImages(imageHashes));
+                } else {
+                    Animatica.LOG.info("Loaded animation textures from the bake cache");
+                }
+            }
+
+            if (images.getDeduplicatedBytes() > 0) {
+                Animatica.LOG.info("Shared {} KiB of animation textures used more than once", images.getDeduplicatedBytes() / 1024);
+            }
+
+            Map<Identifier, AnimatedTexture.Prepared> textures = new Object2ObjectOpenHashMap<>();
+            tasks.forEach((targetId, task) -> task.join().ifPresent(tex -> textures.put(targetId, tex)));
+            return new PreparedReload(textures, reused, discovery.getInputHashes(imageHashes));
+        }).whenComplete((reload, e) -> {
+            // Every task is done by now, whether or not preparing succeeded. Prepared textures and animations hold their
+            // own references to the images they use, and the cache file must not stay open for a later reload to replace it
+            images.close();
+            if (discovery.cache() != null) discovery.cache().close();
+
+            if (e != null) {
+                // Nothing prepared is handed on, so it is all freed here
+                for (var task : tasks.values()) {
+                    if (!task.isCompletedExceptionally()) task.join().ifPresent(AnimatedTexture.Prepared::close);
                 }
-            } catch (IOException | PropertyParseException e) {
-                Animatica.LOG.error(e.getMessage());
             }
         });
+    }
+
+    private static void writeBakeCache(Discovery discovery, SharedImageCache images, long imagesHash) {
+        // Sources only need to be stored as wide as the widest animation using them, targets are stored whole
+        var cropWidths = new Object2IntOpenHashMap<Identifier>();
+        for (var meta : discovery.metas()) {
+            cropWidths.put(meta.target(), Integer.MAX_VALUE);
+        }
+        for (var meta : discovery.metas()) {
+            cropWidths.put(meta.source(), Math.max(cropWidths.getInt(meta.source()), meta.width()));
+        }
 
-        for (var targetId : animations.keySet()) {
-            AnimatedTexture.tryCreate(manager, targetId, animations.get(targetId))
-                    .ifPresent(tex -> {
-                        var animId = new Identifier(targetId.getNamespace(), targetId.getPath() + "-anim");
-                        this.animationIds.put(targetId, animId);
-                        this.animatedTextures.add(tex);
-                        tex.registerTexture(MinecraftClient.getInstance().getTextureManager(), manager, animId, MinecraftClient.getInstance());
-                    });
+        Map<Identifier, NativeImage> decoded = new Object2ObjectLinkedOpenHashMap<>();
+        images.forEachImage(decoded::put);
+
+        try {
+            BakeCache.write(BakeCache.getDefaultPath(), discovery.propertiesHash(), imagesHash, discovery.metas(), decoded, cropWidths);
+        } catch (IOException e) {
+            Animatica.LOG.warn("Could not write animation cache: {}", e.toString());
         }
     }
+
+    // Creates, uploads and registers all prepared textures, on the render thread. Kept textures carry on as they were,
+    // while all others of the previous reload are released before any new texture is created, so their buffers can be reused
+    private void apply(ResourceManager manager, PreparedReload reload, BakeBudget budget, ReloadProfile profile, Profiler profiler) {
+        profiler.startTick();
+        profiler.push("animatica");
+
+        var textureManager = MinecraftClient.getInstance().getTextureManager();
+        Map<Identifier, AnimatedTexture> kept = new Object2ObjectOpenHashMap<>();
+        this.texturesByTarget.forEach((targetId, texture) -> {
+            if (reload.reused().contains(targetId)) {
+                kept.put(targetId, texture);
+            } else {
+                // Removed from the texture manager first, which deletes the GL texture under the id it still holds
+                textureManager.destroyTexture(texture.getId());
+                texture.releaseTo(this.imagePool);
+            }
+        });
+
+        this.animatedTextures.clear();
+        this.texturesByTarget.clear();
+        this.inputHashes.clear();
+        this.schedule.clear();
+        this.generation++;
+
+        kept.forEach((targetId, tex) -> {
+            this.texturesByTarget.put(targetId, tex);
+            this.animatedTextures.add(tex);
+            this.inputHashes.put(targetId, reload.inputHashes().getLong(targetId));
+            // Dormant textures are scheduled again once bound
+            if (!tex.isDormant()) this.schedule.add(tex);
+        });
+
+        reload.textures().forEach((targetId, prepared) -> {
+            try (var section = profile.begin(ReloadProfile.Stage.CREATE, targetId)) {
+                var animId = Utilities.lenientIdentifier(targetId.getNamespace(), targetId.getPath() + "-anim");
+                var tex = prepared.create(animId, this.tick, this.imagePool);
+                this.texturesByTarget.put(targetId, tex);
+                this.animatedTextures.add(tex);
+                this.inputHashes.put(targetId, reload.inputHashes().getLong(targetId));
+                this.schedule.add(tex);
+                tex.registerTexture(textureManager, manager, animId, MinecraftClient.getInstance());
+            }
+        });
+
+        long reusedBytes = this.imagePool.clear();
+        if (reusedBytes > 0) {
+            Animatica.LOG.info("Reused {} KiB of image buffers from replaced animated textures", reusedBytes / 1024);
+        }
+        if (!kept.isEmpty()) {
+            Animatica.LOG.info("Kept {} unchanged animated textures", kept.size());
+        }
+        if (budget.getUsed() > 0) {
+            Animatica.LOG.info("Baked {} KiB of interpolated animation frames", budget.getUsed() / 1024);
+        }
+        profile.logSummary(this.animatedTextures.size());
+
+        profiler.pop();
+        profiler.endTick();
+    }
+
+    // The animations found at the start of a reload, along with the fingerprints of the textures they use, should those
+    // have been taken before decoding
+    private record Discovery(Map<Identifier, List<AnimationMeta>> animations, List<AnimationMeta> metas, Set<Identifier> imageIds, long settings, boolean cacheEnabled, long propertiesHash, @Nullable Object2LongMap<Identifier> imageHashes, @Nullable BakeCache.Contents cache) {
+        private Discovery fingerprinted(Object2LongMap<Identifier> imageHashes, @Nullable BakeCache.Contents cache) {
+            return new Discovery(animations, metas, imageIds, settings, cacheEnabled, propertiesHash, imageHashes, cache);
+        }
+
+        // Fingerprints everything each animated texture is built from, by target
+        private Object2LongMap<Identifier> getInputHashes(Object2LongMap<Identifier> imageHashes) {
+            Object2LongMap<Identifier> inputHashes = new Object2LongOpenHashMap<>();
+            animations.forEach((targetId, targetMetas) -> inputHashes.put(targetId, BakeCache.hashInputs(targetMetas, imageHashes, settings)));
+            return inputHashes;
+        }
+    }
+
+    // The textures to create once a reload is applied, and the targets whose current textures are kept instead
+    private record PreparedReload(Map<Identifier, AnimatedTexture.Prepared> textures, Set<Identifier> reused, Object2LongMap<Identifier> inputHashes) {}
+
+    // What is needed to tell whether a current texture can be kept, captured when a reload starts
+    private record Reusable(long inputHash, long bakedBytes) {}
 }
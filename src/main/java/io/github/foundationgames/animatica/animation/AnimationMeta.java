@@ -17,7 +17,7 @@
  */
 package io.github.foundationgames.animatica.animation;
 
-import com.teampotato.potacore.iteration.MergedIterable;
+import io.github.foundationgames.animatica.util.PropertiesParser;
 import io.github.foundationgames.animatica.util.Utilities;
 import io.github.foundationgames.animatica.util.exception.InvalidPropertyException;
 import io.github.foundationgames.animatica.util.exception.PropertyParseException;
@@ -25,43 +25,135 @@ import net.minecraft.util.Identifier;
 import net.minecraft.util.InvalidIdentifierException;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Map;
-import java.util.Properties;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Frame mappings ("tile.N") and durations ("duration.N") are stored in arrays indexed by frame, holding UNSET
+// for frames that have none of their own. Both arrays end at the greatest frame given a value
+public record AnimationMeta(Identifier source, Identifier target, int targetX, int targetY, int width, int height, int defaultFrameDuration, boolean interpolate, int interpolationDelay, int[] frameMapping, int[] frameDurations) {
+    public static final int UNSET = Integer.MIN_VALUE;
+    private static final int[] NO_FRAMES = new int[0];
+    // The greatest frame a "tile.N" or "duration.N" entry may be given for, which bounds the arrays they are stored in
+    public static final int MAX_FRAME = 0xFFFF;
 
-public record AnimationMeta(Identifier source, Identifier target, int targetX, int targetY, int width, int height, int defaultFrameDuration, boolean interpolate, int interpolationDelay, Map<Integer, Integer> frameMapping, Map<Integer, Integer> frameDurations) {
     @Contract("_, _ -> new")
-    public static @NotNull AnimationMeta of(Identifier file, Properties properties) throws PropertyParseException {
+    public static @NotNull AnimationMeta of(Identifier file, byte[] contents) throws IOException, PropertyParseException {
+        var properties = new Reader();
+        PropertiesParser.parse(file, contents, properties::accept);
+        properties.tiles.validate(file);
+        properties.durations.validate(file);
+
         Identifier source;
         Identifier target;
         try {
-            source = Utilities.processPath(file, new Identifier(Utilities.get(file, properties, "from")));
+            source = Utilities.processPath(file, Utilities.lenientIdentifier(Utilities.require(file, "from", properties.from)));
         } catch (InvalidIdentifierException ex) { throw new InvalidPropertyException(file, "from", "resource location"); }
         try {
-            target = Utilities.processPath(file, new Identifier(Utilities.get(file, properties, "to")));
+            target = Utilities.processPath(file, Utilities.lenientIdentifier(Utilities.require(file, "to", properties.to)));
         } catch (InvalidIdentifierException ex) { throw new InvalidPropertyException(file, "to", "resource location"); }
         return new AnimationMeta(
                 source,
                 target,
-                Utilities.getInt(file, properties, "x"),
-                Utilities.getInt(file, properties, "y"),
-                Utilities.getInt(file, properties, "w"),
-                Utilities.getInt(file, properties, "h"),
-                Utilities.getIntOr(file, properties, "duration", 1),
-                Utilities.getBoolOr(file, properties, "interpolate", false),
-                Utilities.getIntOr(file, properties, "skip", 0),
-                Utilities.intToIntMap(Utilities.getSubProperties(properties, "tile")),
-                Utilities.intToIntMap(Utilities.getSubProperties(properties, "duration"))
+                Utilities.parseInt(file, "x", properties.x),
+                Utilities.parseInt(file, "y", properties.y),
+                Utilities.parseInt(file, "w", properties.w),
+                Utilities.parseInt(file, "h", properties.h),
+                Utilities.parseIntOr(file, "duration", properties.duration, 1),
+                Utilities.parseBoolOr(file, "interpolate", properties.interpolate, false),
+                Utilities.parseIntOr(file, "skip", properties.skip, 0),
+                properties.tiles.toArray(),
+                properties.durations.toArray()
         );
     }
 
     public int getGreatestUsedFrame() {
+        return Math.max(0, Math.max(frameMapping.length, frameDurations.length) - 1);
+    }
+
+    public boolean hasFrameMapping(int frame) {
+        return frame < frameMapping.length && frameMapping[frame] != UNSET;
+    }
+
+    // The frame of the source texture shown on a frame of the animation
+    public int mapFrame(int frame) {
+        return hasFrameMapping(frame) ? frameMapping[frame] : frame;
+    }
+
+    public int getFrameDuration(int frame) {
+        return frame < frameDurations.length && frameDurations[frame] != UNSET ? frameDurations[frame] : defaultFrameDuration;
+    }
 
-        int greatestFrame = 0;
-        for (int frame : new MergedIterable<>(frameMapping.keySet(), frameDurations.keySet())) {
-            greatestFrame = Math.max(frame, greatestFrame);
+    // Collects the properties of an animation file as they are read, later occurrences of a key replacing earlier ones
+    private static final class Reader {
+        private String from, to, x, y, w, h, duration, interpolate, skip;
+        private final FrameValues tiles = new FrameValues();
+        private final FrameValues durations = new FrameValues();
+
+        private void accept(String key, String value) {
+            switch (key) {
+                case "from" -> this.from = value;
+                case "to" -> this.to = value;
+                case "x" -> this.x = value;
+                case "y" -> this.y = value;
+                case "w" -> this.w = value;
+                case "h" -> this.h = value;
+                case "duration" -> this.duration = value;
+                case "interpolate" -> this.interpolate = value;
+                case "skip" -> this.skip = value;
+                default -> {
+                    if (key.startsWith("tile.")) {
+                        tiles.set(key, "tile.".length(), value);
+                    } else if (key.startsWith("duration.")) {
+                        durations.set(key, "duration.".length(), value);
+                    }
+                }
+            }
         }
+    }
+
+    private static final class FrameValues {
+        private int[] values = NO_FRAMES;
+        private int count = 0;
+        // The first entry given for a frame past MAX_FRAME, reported once the file has been read
+        private @Nullable String invalidKey = null;
 
-        return greatestFrame;
+        // Entries whose frame or value is not a whole number are ignored, as are negative frames
+        private void set(String key, int prefixLength, String value) {
+            int frame;
+            int parsed;
+            try {
+                frame = Integer.parseInt(key, prefixLength, key.length(), 10);
+                parsed = Integer.parseInt(value);
+            } catch (NumberFormatException ignored) {
+                return;
+            }
+            if (frame < 0) {
+                return;
+            }
+            if (frame > MAX_FRAME) {
+                if (this.invalidKey == null) this.invalidKey = key;
+                return;
+            }
+
+            if (frame >= values.length) {
+                int oldLength = values.length;
+                this.values = Arrays.copyOf(values, Math.max(frame + 1, oldLength * 2));
+                Arrays.fill(values, oldLength, values.length, UNSET);
+            }
+            this.values[frame] = parsed;
+            this.count = Math.max(count, frame + 1);
+        }
+
+        private void validate(Identifier file) throws PropertyParseException {
+            if (this.invalidKey != null) {
+                throw new InvalidPropertyException(file, this.invalidKey, "frame index of at most " + MAX_FRAME);
+            }
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, count);
+        }
     }
 }
@@ -0,0 +1,52 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.animation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Limits how much memory may be spent on pre-baked animation frames over the course of one reload
+public final class BakeBudget {
+    private final long total;
+    private final AtomicLong remaining;
+
+    public BakeBudget(long bytes) {
+        this.total = bytes;
+        this.remaining = new AtomicLong(bytes);
+    }
+
+    // Claims the given amount of bytes from the budget, or claims nothing and returns false should they not fit
+    public boolean tryReserve(long bytes) {
+        long left;
+        do {
+            left = remaining.get();
+            if (bytes > left) {
+                return false;
+            }
+        } while (!remaining.compareAndSet(left, left - bytes));
+
+        return true;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getUsed() {
+        return total - remaining.get();
+    }
+}
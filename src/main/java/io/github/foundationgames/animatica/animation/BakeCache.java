@@ -0,0 +1,361 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.animation;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.github.foundationgames.animatica.Animatica;
+import io.github.foundationgames.animatica.mixin.NativeImageAccessor;
+import io.github.foundationgames.animatica.util.Utilities;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+import net.minecraftforge.fml.loading.FMLPaths;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+// Persists the parsed animation files and decoded animation textures of a reload to disk, so that later reloads with the
+// same resources can skip parsing and PNG decoding. The cache is validated by fingerprints of the contents of every
+// animation file and every texture they use, and is simply rebuilt whenever either does not match.
+//
+// Layout: the length of the header, then the header (magic, version, both fingerprints, all animation metas, and the
+// format, size and data offset of each image), then the raw pixel data of all images, which is read straight into the memory of each image
+public final class BakeCache {
+    private static final int MAGIC = 0x414E494D;
+    private static final int VERSION = 2;
+
+    public static Path getDefaultPath() {
+        return FMLPaths.GAMEDIR.get().resolve(".cache").resolve(Animatica.NAMESPACE).resolve("bake.bin");
+    }
+
+    // Fingerprints the animation files, which have to be read anyway to be parsed
+    public static long hashProperties(List<AnimationFile> files) {
+        var hasher = Hashing.murmur3_128().newHasher();
+        for (var file : files) {
+            hasher.putString(file.id().toString(), StandardCharsets.UTF_8)
+                    .putString(file.pack(), StandardCharsets.UTF_8)
+                    .putInt(file.contents().length)
+                    .putBytes(file.contents());
+        }
+        return hasher.hash().asLong();
+    }
+
+    // Fingerprints the undecoded contents of a texture, along with the resource pack it came from
+    public static long hashImage(ResourceManager resources, Identifier id) {
+        var resource = resources.getResource(id);
+        if (resource.isEmpty()) {
+            return Hashing.murmur3_128().newHasher().putString(id.toString(), StandardCharsets.UTF_8).putInt(-1).hash().asLong();
+        }
+
+        try (var stream = resource.get().getInputStream()) {
+            return hashImage(id, resource.get().getResourcePackName(), stream.readAllBytes());
+        } catch (IOException e) {
+            return Hashing.murmur3_128().newHasher().putString(id.toString(), StandardCharsets.UTF_8).putInt(-2).hash().asLong();
+        }
+    }
+
+    // Fingerprints a texture from contents that were already read, such as to be decoded. Equal to what reading it
+    // from the resource manager would give
+    public static long hashImage(Identifier id, String pack, byte[] contents) {
+        return Hashing.murmur3_128().newHasher()
+                .putString(id.toString(), StandardCharsets.UTF_8)
+                .putString(pack, StandardCharsets.UTF_8)
+                .putInt(contents.length)
+                .putBytes(contents)
+                .hash().asLong();
+    }
+
+    // Combines the fingerprints of every texture used by the animations, in iteration order
+    public static long hashImages(Object2LongMap<Identifier> imageHashes) {
+        var hasher = Hashing.murmur3_128().newHasher();
+        for (var entry : imageHashes.object2LongEntrySet()) {
+            hasher.putString(entry.getKey().toString(), StandardCharsets.UTF_8)
+                    .putLong(entry.getLongValue());
+        }
+        return hasher.hash().asLong();
+    }
+
+    // Fingerprints everything an animated texture is built from: its animations, the textures they use, and the
+    // settings affecting how they are baked. Equal fingerprints mean an already built texture can be kept as it is
+    public static long hashInputs(List<AnimationMeta> metas, Object2LongMap<Identifier> imageHashes, long settings) {
+        var hasher = Hashing.murmur3_128().newHasher();
+        hasher.putLong(settings);
+        for (var meta : metas) {
+            hasher.putString(meta.source().toString(), StandardCharsets.UTF_8)
+                    .putLong(imageHashes.getLong(meta.source()))
+                    .putString(meta.target().toString(), StandardCharsets.UTF_8)
+                    .putLong(imageHashes.getLong(meta.target()))
+                    .putInt(meta.targetX())
+                    .putInt(meta.targetY())
+                    .putInt(meta.width())
+                    .putInt(meta.height())
+                    .putInt(meta.defaultFrameDuration())
+                    .putBoolean(meta.interpolate())
+                    .putInt(meta.interpolationDelay());
+            hashIntArray(hasher, meta.frameMapping());
+            hashIntArray(hasher, meta.frameDurations());
+        }
+        return hasher.hash().asLong();
+    }
+
+    private static void hashIntArray(Hasher hasher, int[] array) {
+        hasher.putInt(array.length);
+        for (int value : array) {
+            hasher.putInt(value);
+        }
+    }
+
+    // Reads the header of the cache, returning null if there is no cache or it was made from different animation files
+    public static @Nullable Contents read(Path path, long propertiesHash) {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            int headerLength = in.readInt();
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != propertiesHash) {
+                return null;
+            }
+            long imagesHash = in.readLong();
+
+            int metaCount = in.readInt();
+            var metas = new ObjectArrayList<AnimationMeta>(metaCount);
+            for (int i = 0; i < metaCount; i++) {
+                metas.add(readMeta(in));
+            }
+
+            int imageCount = in.readInt();
+            var images = new Object2ObjectOpenHashMap<Identifier, ImageEntry>(imageCount);
+            for (int i = 0; i < imageCount; i++) {
+                var id = Utilities.lenientIdentifier(in.readUTF());
+                images.put(id, new ImageEntry(NativeImage.Format.values()[in.readInt()], in.readInt(), in.readInt(), in.readLong()));
+            }
+
+            return new Contents(path, Integer.BYTES + headerLength, imagesHash, metas, images);
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | RuntimeException e) {
+            Animatica.LOG.warn("Could not read animation cache, it will be rebuilt: {}", e.toString());
+        }
+        return null;
+    }
+
+    // Writes a new cache, with each image cropped to the given width where one is present
+    public static void write(Path path, long propertiesHash, long imagesHash, List<AnimationMeta> metas, Map<Identifier, NativeImage> images, Object2IntOpenHashMap<Identifier> cropWidths) throws IOException {
+        var headerBytes = new ByteArrayOutputStream();
+        var header = new DataOutputStream(headerBytes);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeLong(propertiesHash);
+        header.writeLong(imagesHash);
+
+        header.writeInt(metas.size());
+        for (var meta : metas) {
+            writeMeta(header, meta);
+        }
+
+        header.writeInt(images.size());
+        long offset = 0;
+        for (var entry : images.entrySet()) {
+            var image = entry.getValue();
+            int width = Math.min(image.getWidth(), cropWidths.getOrDefault(entry.getKey(), image.getWidth()));
+
+            header.writeUTF(entry.getKey().toString());
+            header.writeInt(image.getFormat().ordinal());
+            header.writeInt(width);
+            header.writeInt(image.getHeight());
+            header.writeLong(offset);
+            offset += (long) width * image.getHeight() * image.getFormat().getChannelCount();
+        }
+        header.flush();
+
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("Animation textures are too large to be cached");
+        }
+
+        Files.createDirectories(path.getParent());
+        var temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            var lead = ByteBuffer.allocate(Integer.BYTES).putInt(headerBytes.size()).flip();
+            writeFully(channel, lead);
+            writeFully(channel, ByteBuffer.wrap(headerBytes.toByteArray()));
+
+            for (var entry : images.entrySet()) {
+                var image = entry.getValue();
+                int channels = image.getFormat().getChannelCount();
+                int width = Math.min(image.getWidth(), cropWidths.getOrDefault(entry.getKey(), image.getWidth()));
+                long pointer = ((NativeImageAccessor) (Object) image).animatica$getPointer();
+
+                // Rows are written straight from native memory, leaving out any cropped columns
+                for (int y = 0; y < image.getHeight(); y++) {
+                    writeFully(channel, MemoryUtil.memByteBuffer(pointer + (long) y * image.getWidth() * channels, width * channels));
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void writeMeta(DataOutputStream out, AnimationMeta meta) throws IOException {
+        out.writeUTF(meta.source().toString());
+        out.writeUTF(meta.target().toString());
+        out.writeInt(meta.targetX());
+        out.writeInt(meta.targetY());
+        out.writeInt(meta.width());
+        out.writeInt(meta.height());
+        out.writeInt(meta.defaultFrameDuration());
+        out.writeBoolean(meta.interpolate());
+        out.writeInt(meta.interpolationDelay());
+        writeIntArray(out, meta.frameMapping());
+        writeIntArray(out, meta.frameDurations());
+    }
+
+    private static AnimationMeta readMeta(DataInputStream in) throws IOException {
+        return new AnimationMeta(
+                Utilities.lenientIdentifier(in.readUTF()),
+                Utilities.lenientIdentifier(in.readUTF()),
+                in.readInt(),
+                in.readInt(),
+                in.readInt(),
+                in.readInt(),
+                in.readInt(),
+                in.readBoolean(),
+                in.readInt(),
+                readIntArray(in),
+                readIntArray(in)
+        );
+    }
+
+    private static void writeIntArray(DataOutputStream out, int[] array) throws IOException {
+        out.writeInt(array.length);
+        for (int value : array) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readIntArray(DataInputStream in) throws IOException {
+        var array = new int[in.readInt()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = in.readInt();
+        }
+        return array;
+    }
+
+    // A file that animations were parsed from, along with which resource pack provided it
+    public record AnimationFile(Identifier id, String pack, byte[] contents) {}
+
+    private record ImageEntry(NativeImage.Format format, int width, int height, long offset) {}
+
+    // The contents of a cache made from the same animation files as are currently loaded. Must be closed once all images
+    // are loaded, as an open cache file could not be replaced by the next write on some platforms
+    public static final class Contents implements AutoCloseable {
+        private final Path path;
+        private final long dataStart;
+        private final long imagesHash;
+        private final List<AnimationMeta> metas;
+        private final Map<Identifier, ImageEntry> images;
+        private @Nullable FileChannel channel = null;
+
+        private Contents(Path path, long dataStart, long imagesHash, List<AnimationMeta> metas, Map<Identifier, ImageEntry> images) {
+            this.path = path;
+            this.dataStart = dataStart;
+            this.imagesHash = imagesHash;
+            this.metas = metas;
+            this.images = images;
+        }
+
+        public List<AnimationMeta> metas() {
+            return metas;
+        }
+
+        // Whether the cached images were decoded from textures with the given fingerprint
+        public boolean hasImages(long imagesHash) {
+            return this.imagesHash == imagesHash;
+        }
+
+        // Reads a cached image out of the cache file, or returns null if it is not cached
+        public @Nullable NativeImage loadImage(@NotNull Identifier id) throws IOException {
+            var entry = images.get(id);
+            if (entry == null) {
+                return null;
+            }
+
+            var channel = getChannel();
+            long size = (long) entry.width() * entry.height() * entry.format().getChannelCount();
+            // Guards against reading past the end of a truncated cache file
+            if (entry.offset() < 0 || dataStart + entry.offset() + size > channel.size()) {
+                throw new IOException(String.format("Cached image '%s' is incomplete", id));
+            }
+
+            var image = new NativeImage(entry.format(), entry.width(), entry.height(), false);
+            var buffer = MemoryUtil.memByteBuffer(((NativeImageAccessor) (Object) image).animatica$getPointer(), (int) size);
+            try {
+                // Positional reads do not move the channel, so images may be read by several threads at once
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, dataStart + entry.offset() + buffer.position()) < 0) {
+                        throw new IOException(String.format("Cached image '%s' is incomplete", id));
+                    }
+                }
+            } catch (IOException e) {
+                image.close();
+                throw e;
+            }
+            return image;
+        }
+
+        private synchronized FileChannel getChannel() throws IOException {
+            if (this.channel == null) {
+                this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            return this.channel;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (this.channel != null) {
+                try {
+                    this.channel.close();
+                } catch (IOException e) {
+                    Animatica.LOG.warn("Could not close animation cache: {}", e.toString());
+                }
+                this.channel = null;
+            }
+        }
+    }
+}
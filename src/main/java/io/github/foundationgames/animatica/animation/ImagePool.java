@@ -0,0 +1,64 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.animation;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.client.texture.NativeImage;
+
+// Holds on to the image buffers of released animated textures while a reload is applied, handing them out again to new
+// textures needing an image of the same format and size, instead of freeing and allocating the same memory over again.
+// Images are bucketed by format and size, and pooled images left over once a reload is applied are freed
+public final class ImagePool {
+    private final Long2ObjectMap<ObjectArrayList<NativeImage>> buckets = new Long2ObjectOpenHashMap<>();
+    private long reusedBytes = 0;
+
+    // Returns an image of the given format and size with undefined contents, which the caller takes ownership of
+    public NativeImage acquire(NativeImage.Format format, int width, int height) {
+        var bucket = buckets.get(getKey(format, width, height));
+        if (bucket != null && !bucket.isEmpty()) {
+            this.reusedBytes += (long) width * height * format.getChannelCount();
+            return bucket.pop();
+        }
+        return new NativeImage(format, width, height, false);
+    }
+
+    // Takes ownership of an image which is no longer used, to be handed out again or freed when the pool is cleared
+    public void release(NativeImage image) {
+        buckets.computeIfAbsent(getKey(image.getFormat(), image.getWidth(), image.getHeight()), key -> new ObjectArrayList<>()).push(image);
+    }
+
+    // Frees every pooled image, returning the amount of memory which was handed out again since last cleared
+    public long clear() {
+        for (var bucket : buckets.values()) {
+            for (var image : bucket) {
+                image.close();
+            }
+        }
+        buckets.clear();
+
+        long reused = this.reusedBytes;
+        this.reusedBytes = 0;
+        return reused;
+    }
+
+    private static long getKey(NativeImage.Format format, int width, int height) {
+        return ((long) format.ordinal() << 56) | ((long) width << 28) | height;
+    }
+}
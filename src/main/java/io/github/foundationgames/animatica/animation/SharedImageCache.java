@@ -0,0 +1,196 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.animation;
+
+import io.github.foundationgames.animatica.Animatica;
+import io.github.foundationgames.animatica.debug.ReloadProfile;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+// Decodes every texture used by animations at most once per reload, handing out shared read-only references to it.
+// The cache holds a reference to each image until it is closed, after which images are freed once their last user closes them
+public final class SharedImageCache implements AutoCloseable {
+    private final ResourceManager resources;
+    // Images decoded by an earlier reload, used instead of decoding textures where present
+    private final @Nullable BakeCache.Contents baked;
+    private final ReloadProfile profile;
+    private final Map<Identifier, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong deduplicatedBytes = new AtomicLong();
+
+    public SharedImageCache(ResourceManager resources, @Nullable BakeCache.Contents baked, ReloadProfile profile) {
+        this.resources = resources;
+        this.baked = baked;
+        this.profile = profile;
+    }
+
+    // Returns a new reference to the decoded image, which must be closed by the caller once it is no longer needed
+    public SharedImage acquire(Identifier id) throws IOException {
+        return entries.computeIfAbsent(id, Entry::new).acquire();
+    }
+
+    // Passes every image that was successfully loaded to the given action, which must not modify or keep them
+    public void forEachImage(BiConsumer<Identifier, NativeImage> action) {
+        entries.forEach((id, entry) -> {
+            var image = entry.getLoaded();
+            if (image != null) action.accept(id, image);
+        });
+    }
+
+    // The fingerprint of a texture, see BakeCache.hashImage. Taken from the bytes it was decoded from where it was, so
+    // that it does not have to be read again. Must only be called once every image has been acquired
+    public long getFingerprint(Identifier id) {
+        var entry = entries.get(id);
+        if (entry != null) {
+            var fingerprint = entry.getFingerprint();
+            if (fingerprint != null) return fingerprint;
+        }
+        return BakeCache.hashImage(resources, id);
+    }
+
+    // The amount of native memory that would have been used by decoding the same textures multiple times
+    public long getDeduplicatedBytes() {
+        return deduplicatedBytes.get();
+    }
+
+    @Override
+    public void close() {
+        for (var entry : entries.values()) {
+            entry.release();
+        }
+        entries.clear();
+    }
+
+    private final class Entry {
+        private final Identifier id;
+        private SharedImage image = null;
+        private IOException error = null;
+        private boolean loaded = false;
+        private @Nullable Long fingerprint = null;
+
+        private Entry(Identifier id) {
+            this.id = id;
+        }
+
+        private synchronized SharedImage acquire() throws IOException {
+            if (!loaded) {
+                loaded = true;
+                try {
+                    this.image = new SharedImage(load());
+                } catch (IOException e) {
+                    this.error = e;
+                } catch (RuntimeException e) {
+                    // Such as from malformed textures, reported the same way so that every user of the image fails alike
+                    this.error = new IOException(String.format("Could not load texture '%s'", id), e);
+                }
+            } else if (this.image != null) {
+                deduplicatedBytes.addAndGet(this.image.getSizeBytes());
+            }
+
+            if (this.error != null) {
+                throw this.error;
+            }
+            return this.image.retain();
+        }
+
+        private NativeImage load() throws IOException {
+            try (var section = profile.begin(ReloadProfile.Stage.DECODE, id)) {
+                if (baked != null) {
+                    var image = baked.loadImage(id);
+                    if (image != null) {
+                        return image;
+                    }
+                }
+
+                var resource = resources.getResourceOrThrow(id);
+                byte[] contents;
+                try (var stream = resource.getInputStream()) {
+                    contents = stream.readAllBytes();
+                }
+                this.fingerprint = BakeCache.hashImage(id, resource.getResourcePackName(), contents);
+                if (contents.length == 0) {
+                    throw new IOException(String.format("Texture '%s' is empty", id));
+                }
+
+                var buffer = MemoryUtil.memAlloc(contents.length);
+                try {
+                    return NativeImage.read(buffer.put(contents).flip());
+                } finally {
+                    MemoryUtil.memFree(buffer);
+                }
+            }
+        }
+
+        private synchronized @Nullable Long getFingerprint() {
+            return this.fingerprint;
+        }
+
+        private synchronized @Nullable NativeImage getLoaded() {
+            return this.image != null ? this.image.get() : null;
+        }
+
+        private synchronized void release() {
+            if (this.image != null) {
+                this.image.close();
+            }
+        }
+    }
+
+    // A reference counted image which may be used by several animations at once, and must not be modified
+    public static final class SharedImage implements AutoCloseable {
+        private final NativeImage image;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        public SharedImage(@NotNull NativeImage image) {
+            this.image = image;
+        }
+
+        public NativeImage get() {
+            return this.image;
+        }
+
+        public long getSizeBytes() {
+            return (long) image.getWidth() * image.getHeight() * image.getFormat().getChannelCount();
+        }
+
+        public SharedImage retain() {
+            this.references.incrementAndGet();
+            return this;
+        }
+
+        @Override
+        public void close() {
+            int remaining = this.references.decrementAndGet();
+            if (remaining == 0) {
+                this.image.close();
+            } else if (remaining < 0) {
+                Animatica.LOG.warn("Shared image closed more times than it was acquired");
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.animation;
+
+// Running totals of the work done to keep one animated texture up to date, since it was created.
+// Only updated on the render thread, and cheap enough to always be collected
+public final class TextureMetrics {
+    private long elapsedTicks = 0;
+    private long compositedTicks = 0;
+    private long compositeNanos = 0;
+    private long pixelsCopied = 0;
+    private long pixelsBlended = 0;
+    private long bytesUploaded = 0;
+
+    void recordComposite(long nanos, long copied, long blended) {
+        this.compositedTicks++;
+        this.compositeNanos += nanos;
+        this.pixelsCopied += copied;
+        this.pixelsBlended += blended;
+    }
+
+    void recordTick(long elapsed, long uploaded) {
+        this.elapsedTicks += elapsed;
+        this.bytesUploaded += uploaded;
+    }
+
+    // Ticks of the animation clock the texture was kept up to date over, whether or not it was visited on them
+    public long getElapsedTicks() {
+        return elapsedTicks;
+    }
+
+    public long getCompositedTicks() {
+        return compositedTicks;
+    }
+
+    // Ticks on which nothing had to be composited or uploaded, because no animation looked any different
+    public long getSkippedTicks() {
+        return Math.max(0, elapsedTicks - compositedTicks);
+    }
+
+    public double getSkipRatio() {
+        return elapsedTicks > 0 ? (double) getSkippedTicks() / elapsedTicks : 0;
+    }
+
+    public long getCompositeNanos() {
+        return compositeNanos;
+    }
+
+    public long getPixelsCopied() {
+        return pixelsCopied;
+    }
+
+    public long getPixelsBlended() {
+        return pixelsBlended;
+    }
+
+    public long getBytesUploaded() {
+        return bytesUploaded;
+    }
+}
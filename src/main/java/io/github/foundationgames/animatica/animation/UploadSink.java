@@ -0,0 +1,33 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.animation;
+
+import net.minecraft.client.texture.AbstractTexture;
+import net.minecraft.client.texture.NativeImage;
+
+// Receives the regions of an animated texture that were redrawn and need to be sent to the GPU,
+// allowing the amount of uploaded data to be observed without a GL context
+@FunctionalInterface
+public interface UploadSink {
+    UploadSink GL = (texture, image, x, y, width, height) -> {
+        texture.bindTexture();
+        image.upload(0, x, y, x, y, width, height, false, false);
+    };
+
+    void upload(AbstractTexture texture, NativeImage image, int x, int y, int width, int height);
+}
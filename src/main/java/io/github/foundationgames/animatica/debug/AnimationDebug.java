@@ -0,0 +1,104 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.debug;
+
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import io.github.foundationgames.animatica.Animatica;
+import io.github.foundationgames.animatica.animation.AnimatedTexture;
+import io.github.foundationgames.animatica.animation.AnimationLoader;
+import io.github.foundationgames.animatica.animation.TextureMetrics;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraftforge.client.event.CustomizeGuiOverlayEvent;
+import net.minecraftforge.client.event.RegisterClientCommandsEvent;
+
+import java.util.Comparator;
+import java.util.List;
+
+// Makes the metrics collected for animated textures visible in game, through the F3 screen and the /animatica command
+public final class AnimationDebug {
+    private static final int DEFAULT_TOP_COUNT = 10;
+    private static final Comparator<AnimatedTexture> MOST_EXPENSIVE =
+            Comparator.comparingLong((AnimatedTexture texture) -> texture.getMetrics().getCompositeNanos()).reversed();
+
+    private AnimationDebug() {
+    }
+
+    public static void addDebugText(CustomizeGuiOverlayEvent.DebugText event) {
+        var loader = AnimationLoader.INSTANCE;
+        var textures = loader.getAnimatedTextures();
+        int dormant = 0;
+        for (var texture : textures) {
+            if (texture.isDormant()) dormant++;
+        }
+
+        var lines = event.getRight();
+        lines.add("");
+        lines.add(String.format("[Animatica] %d animated textures, %d dormant", textures.size(), dormant));
+        lines.add(String.format("[Animatica] Last update: %d textures, %.3f ms, %d KiB uploaded",
+                loader.getLastPassTextures(), loader.getLastPassNanos() / 1e6, loader.getLastPassUploaded() / 1024));
+        lines.add("[Animatica] Skipped: " + describeSkippedWork(loader));
+        if (Animatica.PIPELINED_COMPOSITING.get()) {
+            lines.add(String.format("[Animatica] Pipelined, %d frames shown late", loader.getLateComposites()));
+        }
+    }
+
+    // Work left out since the game started, by putting unused textures to sleep and by delaying updates over the upload budget
+    private static String describeSkippedWork(AnimationLoader loader) {
+        return String.format("%d slept, %d woken after %d dormant ticks, %d updates deferred",
+                loader.getSleptTextures(), loader.getWokenTextures(), loader.getDormantTicks(), loader.getDeferredUpdates());
+    }
+
+    public static void registerCommands(RegisterClientCommandsEvent event) {
+        event.getDispatcher().register(CommandManager.literal("animatica")
+                .then(CommandManager.literal("top")
+                        .executes(context -> printTop(context, DEFAULT_TOP_COUNT))
+                        .then(CommandManager.argument("count", IntegerArgumentType.integer(1))
+                                .executes(context -> printTop(context, IntegerArgumentType.getInteger(context, "count"))))));
+    }
+
+    // Lists the textures which took the most time to composite since they were loaded
+    private static int printTop(CommandContext<ServerCommandSource> context, int count) {
+        List<AnimatedTexture> textures = new ObjectArrayList<>(AnimationLoader.INSTANCE.getAnimatedTextures());
+        textures.sort(MOST_EXPENSIVE);
+
+        var source = context.getSource();
+        source.sendFeedback(Text.literal(String.format("Most expensive of %d animated textures:", textures.size())), false);
+        int shown = Math.min(count, textures.size());
+        for (int i = 0; i < shown; i++) {
+            var texture = textures.get(i);
+            source.sendFeedback(Text.literal(String.format("%d. %s: %s", i + 1, texture.getId(), describe(texture.getMetrics()))), false);
+        }
+        source.sendFeedback(Text.literal("Skipped overall: " + describeSkippedWork(AnimationLoader.INSTANCE)), false);
+        return shown;
+    }
+
+    private static String describe(TextureMetrics metrics) {
+        long composited = metrics.getCompositedTicks();
+        return String.format("%.2f ms total (%.1f µs per composite), %d px copied, %d px blended, %d KiB uploaded, %.0f%% of ticks skipped",
+                metrics.getCompositeNanos() / 1e6,
+                composited > 0 ? metrics.getCompositeNanos() / 1e3 / composited : 0,
+                metrics.getPixelsCopied(),
+                metrics.getPixelsBlended(),
+                metrics.getBytesUploaded() / 1024,
+                metrics.getSkipRatio() * 100);
+    }
+}
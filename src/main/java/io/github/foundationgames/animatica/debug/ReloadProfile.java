@@ -0,0 +1,84 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.debug;
+
+import io.github.foundationgames.animatica.Animatica;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Times the stages of one animation reload, both as JFR events and as totals logged once the reload finishes.
+// Stages run on several worker threads at once add up the time of each thread
+public final class ReloadProfile {
+    private final long start = System.nanoTime();
+    private final AtomicLongArray stageNanos = new AtomicLongArray(Stage.values().length);
+
+    // Starts timing a piece of work, which ends when the returned section is closed
+    public Section begin(Stage stage, Object target) {
+        var event = new ReloadStageEvent();
+        if (event.isEnabled()) {
+            event.stage = stage.label;
+            event.target = String.valueOf(target);
+            event.begin();
+        }
+        return new Section(stage, event);
+    }
+
+    public void logSummary(int textures) {
+        var stages = new StringBuilder();
+        for (var stage : Stage.values()) {
+            if (stages.length() > 0) stages.append(", ");
+            stages.append(String.format("%s %.1f ms", stage.label, stageNanos.get(stage.ordinal()) / 1e6));
+        }
+
+        Animatica.LOG.info("Loaded {} animated textures in {} ms ({})", textures, (System.nanoTime() - start) / 1000000, stages);
+    }
+
+    public enum Stage {
+        DISCOVER("discover"),
+        FINGERPRINT("fingerprint"),
+        PARSE("parse"),
+        DECODE("decode"),
+        PREPARE("prepare"),
+        CREATE("create");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    public final class Section implements AutoCloseable {
+        private final Stage stage;
+        private final ReloadStageEvent event;
+        private final long start = System.nanoTime();
+
+        private Section(Stage stage, ReloadStageEvent event) {
+            this.stage = stage;
+            this.event = event;
+        }
+
+        @Override
+        public void close() {
+            stageNanos.addAndGet(stage.ordinal(), System.nanoTime() - start);
+            if (event.isEnabled()) {
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.debug;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Recorded by Java Flight Recorder for each pass over the animated textures due on a tick
+@Name("io.github.foundationgames.animatica.TickTextures")
+@Label("Animated Texture Update")
+@Category("Animatica")
+public final class TickTexturesEvent extends Event {
+    @Label("Tick")
+    public long tick;
+
+    @Label("Due Textures")
+    public int dueTextures;
+
+    @Label("Deferred Textures")
+    public int deferredTextures;
+
+    @Label("Uploaded")
+    @DataAmount
+    public long uploaded;
+}
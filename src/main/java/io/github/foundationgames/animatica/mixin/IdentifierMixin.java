@@ -17,17 +17,45 @@
  */
 package io.github.foundationgames.animatica.mixin;
 
-import io.github.foundationgames.animatica.Animatica;
+import io.github.foundationgames.animatica.animation.AnimatedTexture;
+import io.github.foundationgames.animatica.util.IdentifierExtension;
+import io.github.foundationgames.animatica.util.Utilities;
 import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 @Mixin(Identifier.class)
-public class IdentifierMixin {
-    @Inject(method = "isPathCharacterValid", at = @At("HEAD"), cancellable = true)
-    private static void animatica$allowInvalidCharacters(char character, CallbackInfoReturnable<Boolean> cir) {
-        cir.setReturnValue(true);
+public class IdentifierMixin implements IdentifierExtension {
+    @Unique private int animatica$generation = -1;
+    @Unique private @Nullable AnimatedTexture animatica$animatedTexture = null;
+
+    // Only identifiers built by Animatica from animation files may use characters vanilla does not allow in paths, all
+    // others are validated as usual. Leniency is only looked up once the vanilla check has already failed. Injected rather
+    // than redirected, so that other mods hooking into path validation as well can do so alongside
+    @Inject(method = "isPathValid", at = @At("RETURN"), cancellable = true)
+    private static void animatica$allowLenientPaths(String path, CallbackInfoReturnable<Boolean> cir) {
+        if (!cir.getReturnValueZ() && Utilities.areIdentifiersLenient()) {
+            cir.setReturnValue(true);
+        }
+    }
+
+    @Override
+    public int animatica$getGeneration() {
+        return this.animatica$generation;
+    }
+
+    @Override
+    public @Nullable AnimatedTexture animatica$getAnimatedTexture() {
+        return this.animatica$animatedTexture;
+    }
+
+    @Override
+    public void animatica$setAnimatedTexture(int generation, @Nullable AnimatedTexture texture) {
+        this.animatica$generation = generation;
+        this.animatica$animatedTexture = texture;
     }
 }
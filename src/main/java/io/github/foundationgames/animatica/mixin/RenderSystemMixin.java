@@ -29,10 +29,11 @@ import org.spongepowered.asm.mixin.injection.ModifyVariable;
 public class RenderSystemMixin {
     @ModifyVariable(method = "_setShaderTexture(ILnet/minecraft/util/Identifier;)V", at = @At("HEAD"), index = 1, argsOnly = true)
     private static Identifier animatica$replaceWithAnimatedTexture(Identifier old) {
-        if (Animatica.ANIMATED_TEXTURES.get()) {
-            var anim = AnimationLoader.INSTANCE.getAnimationId(old);
+        if (Animatica.areAnimatedTexturesEnabled()) {
+            var anim = AnimationLoader.INSTANCE.getAnimatedTexture(old);
             if (anim != null) {
-                return anim;
+                AnimationLoader.INSTANCE.onBind(anim);
+                return anim.getId();
             }
         }
         return old;
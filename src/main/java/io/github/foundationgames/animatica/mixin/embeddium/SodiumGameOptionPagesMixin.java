@@ -4,6 +4,7 @@ import io.github.foundationgames.animatica.Animatica;
 import me.jellysquid.mods.sodium.client.gui.SodiumGameOptionPages;
 import me.jellysquid.mods.sodium.client.gui.SodiumGameOptions;
 import me.jellysquid.mods.sodium.client.gui.options.*;
+import me.jellysquid.mods.sodium.client.gui.options.control.SliderControl;
 import me.jellysquid.mods.sodium.client.gui.options.control.TickBoxControl;
 import me.jellysquid.mods.sodium.client.gui.options.storage.SodiumOptionsStorage;
 import net.minecraft.text.Text;
@@ -28,10 +29,28 @@ public abstract class SodiumGameOptionPagesMixin {
                 .setName(Text.translatable("option.animatica.animated_textures"))
                 .setTooltip(Text.of(""))
                 .setControl(TickBoxControl::new)
-                .setBinding((sodiumGameOptions, aBoolean) -> Animatica.ANIMATED_TEXTURES.set(aBoolean), sodiumGameOptions -> Animatica.ANIMATED_TEXTURES.get())
+                .setBinding((sodiumGameOptions, aBoolean) -> Animatica.setAnimatedTexturesEnabled(aBoolean), sodiumGameOptions -> Animatica.areAnimatedTexturesEnabled())
                 .setImpact(OptionImpact.VARIES)
                 .setFlags(new OptionFlag[]{OptionFlag.REQUIRES_ASSET_RELOAD})
                 .build();
-        groups.add(OptionGroup.createBuilder().add(animatedTextures).build());
+        OptionImpl<SodiumGameOptions, Integer> uploadBudget = OptionImpl.createBuilder(Integer.TYPE, sodiumOpts)
+                .setName(Text.translatable("option.animatica.upload_budget"))
+                .setTooltip(Text.translatable("option.animatica.upload_budget.tooltip"))
+                .setControl(option -> new SliderControl(option, 0, Animatica.MAX_UPLOAD_BUDGET_KB, Animatica.UPLOAD_BUDGET_STEP_KB, value -> value == 0 ?
+                        Text.translatable("option.animatica.upload_budget.unlimited") :
+                        Text.translatable("option.animatica.upload_budget.value", value)))
+                // Values between steps, which can only be set in the config file, are shown as the nearest step and kept unless the slider is moved
+                .setBinding((sodiumGameOptions, value) -> Animatica.UPLOAD_BUDGET_KB.set(value), sodiumGameOptions ->
+                        Math.round((float) Animatica.UPLOAD_BUDGET_KB.get() / Animatica.UPLOAD_BUDGET_STEP_KB) * Animatica.UPLOAD_BUDGET_STEP_KB)
+                .setImpact(OptionImpact.MEDIUM)
+                .build();
+        OptionImpl<SodiumGameOptions, Integer> tickRateDivisor = OptionImpl.createBuilder(Integer.TYPE, sodiumOpts)
+                .setName(Text.translatable("option.animatica.tick_rate_divisor"))
+                .setTooltip(Text.translatable("option.animatica.tick_rate_divisor.tooltip"))
+                .setControl(option -> new SliderControl(option, 1, 20, 1, value -> Text.translatable("option.animatica.tick_rate_divisor.value", value)))
+                .setBinding((sodiumGameOptions, value) -> Animatica.TICK_RATE_DIVISOR.set(value), sodiumGameOptions -> Animatica.TICK_RATE_DIVISOR.get())
+                .setImpact(OptionImpact.MEDIUM)
+                .build();
+        groups.add(OptionGroup.createBuilder().add(animatedTextures).add(uploadBudget).add(tickRateDivisor).build());
     }
 }
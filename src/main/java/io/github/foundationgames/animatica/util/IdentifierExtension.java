@@ -0,0 +1,31 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.util;
+
+import io.github.foundationgames.animatica.animation.AnimatedTexture;
+import org.jetbrains.annotations.Nullable;
+
+// Implemented on Identifier through mixin, caching which animated texture replaces the identified texture.
+// Each cached value is stamped with the reload generation it was looked up in, and only read on the render thread
+public interface IdentifierExtension {
+    int animatica$getGeneration();
+
+    @Nullable AnimatedTexture animatica$getAnimatedTexture();
+
+    void animatica$setAnimatedTexture(int generation, @Nullable AnimatedTexture texture);
+}
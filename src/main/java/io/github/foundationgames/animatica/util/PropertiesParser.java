@@ -0,0 +1,126 @@
+/*
+ * This file is part of Animatica - https://github.com/FoundationGames/Animatica
+ * Copyright (C) FoundationGames: https://github.com/FoundationGames/Animatica
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.foundationgames.animatica.util;
+
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.function.BiConsumer;
+
+// Reads the key-value pairs of a .properties file in a single pass over its bytes, passing each pair on as it is read.
+// Follows the same rules as java.util.Properties: ISO 8859-1 text, '#' and '!' comments, '=', ':' or whitespace
+// separating keys from values, backslash escapes and line continuations. Keys appearing more than once are all passed on
+public final class PropertiesParser {
+    private final Identifier file;
+    private final byte[] data;
+    private final StringBuilder builder = new StringBuilder();
+    private int pos = 0;
+
+    private PropertiesParser(Identifier file, byte[] data) {
+        this.file = file;
+        this.data = data;
+    }
+
+    public static void parse(@NotNull Identifier file, byte @NotNull [] data, @NotNull BiConsumer<String, String> action) throws IOException {
+        new PropertiesParser(file, data).parse(action);
+    }
+
+    private void parse(BiConsumer<String, String> action) throws IOException {
+        while (pos < data.length) {
+            char c = charAt(pos);
+            if (isWhitespace(c) || isLineEnd(c)) {
+                pos++;
+            } else if (c == '#' || c == '!') {
+                while (pos < data.length && !isLineEnd(charAt(pos))) pos++;
+            } else {
+                var key = read(true);
+                skipWhitespace();
+                if (pos < data.length && (charAt(pos) == '=' || charAt(pos) == ':')) {
+                    pos++;
+                    skipWhitespace();
+                }
+                action.accept(key, read(false));
+            }
+        }
+    }
+
+    // Reads a key or value up until the end of its logical line (or the separator, for keys), resolving escapes
+    private String read(boolean key) throws IOException {
+        builder.setLength(0);
+        while (pos < data.length) {
+            char c = charAt(pos);
+            if (isLineEnd(c) || (key && (c == '=' || c == ':' || isWhitespace(c)))) {
+                break;
+            }
+            pos++;
+
+            if (c != '\\') {
+                builder.append(c);
+            } else if (pos < data.length) {
+                char escaped = charAt(pos++);
+                switch (escaped) {
+                    case '\r' -> {
+                        if (pos < data.length && charAt(pos) == '\n') pos++;
+                        skipWhitespace();
+                    }
+                    case '\n' -> skipWhitespace();
+                    case 't' -> builder.append('\t');
+                    case 'n' -> builder.append('\n');
+                    case 'r' -> builder.append('\r');
+                    case 'f' -> builder.append('\f');
+                    case 'u' -> builder.append(readUnicode());
+                    default -> builder.append(escaped);
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    private char readUnicode() throws IOException {
+        if (pos + 4 > data.length) {
+            throw new IOException(String.format("Malformed \\uxxxx encoding in file '%s'", file));
+        }
+
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(charAt(pos++), 16);
+            if (digit < 0) {
+                throw new IOException(String.format("Malformed \\uxxxx encoding in file '%s'", file));
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    private void skipWhitespace() {
+        while (pos < data.length && isWhitespace(charAt(pos))) pos++;
+    }
+
+    private char charAt(int index) {
+        return (char) (data[index] & 0xFF);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\f';
+    }
+
+    private static boolean isLineEnd(char c) {
+        return c == '\n' || c == '\r';
+    }
+}
@@ -17,100 +17,107 @@
  */
 package io.github.foundationgames.animatica.util;
 
+import io.github.foundationgames.animatica.mixin.NativeImageAccessor;
 import io.github.foundationgames.animatica.util.exception.InvalidPropertyException;
 import io.github.foundationgames.animatica.util.exception.MissingPropertyException;
 import io.github.foundationgames.animatica.util.exception.PropertyParseException;
-import it.unimi.dsi.fastutil.ints.Int2IntMaps;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import net.minecraft.client.texture.NativeImage;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.MathHelper;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Unmodifiable;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.system.MemoryUtil;
 
-import java.util.Map;
-import java.util.Properties;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Supplier;
 
 public final class Utilities {
+    // Set on threads building identifiers from animation files, whose paths may contain characters vanilla does not allow
+    private static final ThreadLocal<Boolean> LENIENT_IDENTIFIERS = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    public static boolean areIdentifiersLenient() {
+        return LENIENT_IDENTIFIERS.get();
+    }
+
+    /**
+     * Run an action during which identifiers created on the current thread may use any characters in their paths
+     *
+     * @param action The action to run
+     * @return The result of the action
+     */
+    public static <T> T withLenientIdentifiers(@NotNull Supplier<T> action) {
+        boolean previous = LENIENT_IDENTIFIERS.get();
+        LENIENT_IDENTIFIERS.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            LENIENT_IDENTIFIERS.set(previous);
+        }
+    }
+
+    public static @NotNull Identifier lenientIdentifier(@NotNull String id) {
+        return withLenientIdentifiers(() -> new Identifier(id));
+    }
+
+    public static @NotNull Identifier lenientIdentifier(@NotNull String namespace, @NotNull String path) {
+        return withLenientIdentifiers(() -> new Identifier(namespace, path));
+    }
+
     public static @NotNull Identifier processPath(Identifier fileRelativeTo, @NotNull Identifier path) {
         if (path.getPath().startsWith("./")) {
             int lInd = fileRelativeTo.getPath().lastIndexOf("/");
             if (lInd > 0) {
                 var builder = new StringBuilder(fileRelativeTo.getPath());
                 builder.replace(lInd, builder.length(), path.getPath().replaceFirst("\\./", "/"));
-                return new Identifier(fileRelativeTo.getNamespace(), builder.toString());
+                return lenientIdentifier(fileRelativeTo.getNamespace(), builder.toString());
             }
         } else if (path.getPath().startsWith("~/")) {
-            return new Identifier(path.getNamespace(), path.getPath().replaceFirst("~/", "optifine/"));
+            return lenientIdentifier(path.getNamespace(), path.getPath().replaceFirst("~/", "optifine/"));
         }
         return path;
     }
 
-    public static @NotNull String get(Identifier file, @NotNull Properties properties, String key) throws PropertyParseException {
-        var p = properties.getProperty(key);
-        if (p == null) {
+    public static @NotNull String require(Identifier file, String key, @Nullable String value) throws PropertyParseException {
+        if (value == null) {
             throw new MissingPropertyException(file, key);
         }
-        return p;
+        return value;
     }
 
-    public static @NotNull Properties getSubProperties(@NotNull Properties properties, String key) {
-        var p = new Properties();
-        final var prefix = key + ".";
-        for (String k : properties.stringPropertyNames()) {
-            if (k.startsWith(prefix)) {
-                var newKey = k.replaceFirst(prefix, "");
-                p.setProperty(newKey, properties.getProperty(k));
-            }
-        }
-        return p;
-    }
-
-    public static int getInt(Identifier file, Properties properties, String key) throws PropertyParseException {
+    public static int parseInt(Identifier file, String key, @Nullable String value) throws PropertyParseException {
         int r;
         try {
-            r = Integer.parseInt(get(file, properties, key));
+            r = Integer.parseInt(require(file, key, value));
         } catch (NumberFormatException ignored) {
             throw new InvalidPropertyException(file, key, "integer (whole number)");
         }
         return r;
     }
 
-    public static int getIntOr(Identifier file, @NotNull Properties properties, String key, int defaultVal) throws PropertyParseException {
-        var p = properties.getProperty(key);
-        if (p == null) {
+    public static int parseIntOr(Identifier file, String key, @Nullable String value, int defaultVal) throws PropertyParseException {
+        if (value == null) {
             return defaultVal;
         }
         int r;
         try {
-            r = Integer.parseInt(p);
+            r = Integer.parseInt(value);
         } catch (NumberFormatException ignored) {
             throw new InvalidPropertyException(file, key, "integer");
         }
         return r;
     }
 
-    public static boolean getBoolOr(Identifier file, @NotNull Properties properties, String key, boolean defaultVal) throws PropertyParseException {
-        var p = properties.getProperty(key);
-        if (p == null) {
+    public static boolean parseBoolOr(Identifier file, String key, @Nullable String value, boolean defaultVal) throws PropertyParseException {
+        if (value == null) {
             return defaultVal;
         }
-        if ("false".equals(p) || "true".equals(p)) {
-            return "true".equals(p);
+        if ("false".equals(value) || "true".equals(value)) {
+            return "true".equals(value);
         }
         throw new InvalidPropertyException(file, key, "boolean (false/true)");
     }
 
-    public static @NotNull @Unmodifiable Map<Integer, Integer> intToIntMap(@NotNull Properties in) {
-        var map = new Int2IntOpenHashMap();
-        for (String k : in.stringPropertyNames()) {
-            try {
-                map.put(Integer.parseInt(k), Integer.parseInt(in.getProperty(k)));
-            } catch (NumberFormatException ignored) {}
-        }
-        return Int2IntMaps.unmodifiable(map);
-    }
-
     /**
      * Copy a section of an image into another image
      *
@@ -124,23 +131,138 @@ public final class Utilities {
      * @param dv The v coordinate on the destination image to place the selection at
      */
     public static void copy(NativeImage src, int u, int v, int w, int h, NativeImage dest, int du, int dv) {
-        // iterate through the entire section of the image to be copied over
-        for (int rx = 0; rx < w; rx++) {
+        // bounds are checked once for the whole selection rather than for every pixel
+        checkBounds(src, u, v, w, h);
+        checkBounds(dest, du, dv, w, h);
+
+        if (src.getFormat() == dest.getFormat()) {
+            // both images share a memory layout, so each row of the selection can be copied as one block
+            final long bytesPerPixel = src.getFormat().getChannelCount();
+            final long srcPtr = getPointer(src);
+            final long destPtr = getPointer(dest);
+            final long rowBytes = w * bytesPerPixel;
+
             for (int ry = 0; ry < h; ry++) {
-                // the current x/y coordinates in the source image
-                int srcX = u + rx;
-                int srcY = v + ry;
-                // the corresponding target x/y coordinates in the target image
-                int trgX = du + rx;
-                int trgY = dv + ry;
+                long srcOffset = ((long) (v + ry) * src.getWidth() + u) * bytesPerPixel;
+                long destOffset = ((long) (dv + ry) * dest.getWidth() + du) * bytesPerPixel;
+                MemoryUtil.memCopy(srcPtr + srcOffset, destPtr + destOffset, rowBytes);
+            }
+            return;
+        }
 
+        // iterate through the entire section of the image to be copied over, row by row
+        for (int ry = 0; ry < h; ry++) {
+            for (int rx = 0; rx < w; rx++) {
                 // set the color of the target pixel on the destination image
                 // to the color from the corresponding pixel on the source image
-                dest.setColor(trgX, trgY, src.getColor(srcX, srcY));
+                dest.setColor(du + rx, dv + ry, src.getColor(u + rx, v + ry));
             }
         }
     }
 
+    /**
+     * Hash the pixels of a section of an image
+     *
+     * @param image The image to read from
+     * @param u The u coordinate on the image to start the selection from
+     * @param v The v coordinate on the image to start the selection from
+     * @param w The width of the selection area
+     * @param h The height of the selection area
+     * @return A hash which is equal for sections with equal pixels
+     */
+    public static long hashRegion(NativeImage image, int u, int v, int w, int h) {
+        checkBounds(image, u, v, w, h);
+
+        final int channels = image.getFormat().getChannelCount();
+        final long rowBytes = (long) w * channels;
+        final long ptr = getPointer(image);
+        long hash = 1;
+        for (int ry = 0; ry < h; ry++) {
+            long row = ptr + ((long) (v + ry) * image.getWidth() + u) * channels;
+            long i = 0;
+            for (; i + Long.BYTES <= rowBytes; i += Long.BYTES) {
+                hash = hash * 31 + MemoryUtil.memGetLong(row + i);
+            }
+            for (; i < rowBytes; i++) {
+                hash = hash * 31 + MemoryUtil.memGetByte(row + i);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Check whether two sections of images have exactly the same pixels
+     *
+     * @param a The first image
+     * @param u0 The u coordinate on the first image to start the first selection from
+     * @param v0 The v coordinate on the first image to start the first selection from
+     * @param b The second image
+     * @param u1 The u coordinate on the second image to start the second selection from
+     * @param v1 The v coordinate on the second image to start the second selection from
+     * @param w The width of both selection areas
+     * @param h The height of both selection areas
+     */
+    public static boolean regionsEqual(NativeImage a, int u0, int v0, NativeImage b, int u1, int v1, int w, int h) {
+        checkBounds(a, u0, v0, w, h);
+        checkBounds(b, u1, v1, w, h);
+        if (a.getFormat() != b.getFormat()) {
+            return false;
+        }
+
+        final int channels = a.getFormat().getChannelCount();
+        final long rowBytes = (long) w * channels;
+        final long ptrA = getPointer(a);
+        final long ptrB = getPointer(b);
+        for (int ry = 0; ry < h; ry++) {
+            long rowA = ptrA + ((long) (v0 + ry) * a.getWidth() + u0) * channels;
+            long rowB = ptrB + ((long) (v1 + ry) * b.getWidth() + u1) * channels;
+            long i = 0;
+            for (; i + Long.BYTES <= rowBytes; i += Long.BYTES) {
+                if (MemoryUtil.memGetLong(rowA + i) != MemoryUtil.memGetLong(rowB + i)) return false;
+            }
+            for (; i < rowBytes; i++) {
+                if (MemoryUtil.memGetByte(rowA + i) != MemoryUtil.memGetByte(rowB + i)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ensure that a rectangular selection lies entirely within an image
+     *
+     * @throws IllegalArgumentException if any part of the selection is outside the image
+     */
+    public static void checkBounds(@NotNull NativeImage image, int x, int y, int w, int h) {
+        if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > image.getWidth() || y + h > image.getHeight()) {
+            throw new IllegalArgumentException(String.format("Area (%s, %s, %s, %s) out of bounds for image of size %sx%s", x, y, w, h, image.getWidth(), image.getHeight()));
+        }
+    }
+
+    private static long getPointer(NativeImage image) {
+        long pointer = (Object) image instanceof NativeImageAccessor accessor ? accessor.animatica$getPointer() : UnmixedPointer.get(image);
+        if (pointer == 0) {
+            throw new IllegalStateException("Image is not allocated.");
+        }
+        return pointer;
+    }
+
+    // Mixins are only applied within the game, elsewhere (such as in benchmarks) the pointer is read reflectively
+    private static final class UnmixedPointer {
+        private static final VarHandle POINTER;
+
+        static {
+            try {
+                POINTER = MethodHandles.privateLookupIn(NativeImage.class, MethodHandles.lookup()).findVarHandle(NativeImage.class, "pointer", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private static long get(NativeImage image) {
+            return (long) POINTER.get(image);
+        }
+    }
+
     /**
      * Copy a blend between 2 sections on a source image to a destination image
      *
@@ -158,55 +280,86 @@ public final class Utilities {
      *              second (0 = solid first image, 1 = solid second image)
      */
     public static void blendCopy(NativeImage src, int u0, int v0, int u1, int v1, int w, int h, NativeImage dest, int du, int dv, float blend) {
-        // iterate through the entire section of the image to be copied over
-        for (int rx = 0; rx < w; rx++) {
+        checkBounds(src, u0, v0, w, h);
+        checkBounds(src, u1, v1, w, h);
+        checkBounds(dest, du, dv, w, h);
+
+        final var format = src.getFormat();
+        final int alphaMask = getAlphaMask(format);
+        final int weight = getBlendWeight(blend);
+
+        if (format == dest.getFormat() && format.getChannelCount() == 4) {
+            // pixels are read and written as whole 32-bit words directly from each row in memory
+            final long srcPtr = getPointer(src);
+            final long destPtr = getPointer(dest);
+
             for (int ry = 0; ry < h; ry++) {
-                // the first set of x/y coordinates in the source image
-                int srcX0 = u0 + rx;
-                int srcY0 = v0 + ry;
-                // the second set of x/y coordinates in the source image
-                int srcX1 = u1 + rx;
-                int srcY1 = v1 + ry;
-                // the corresponding target x/y coordinates in the target image
-                int trgX = du + rx;
-                int trgY = dv + ry;
+                // the start of the current row in both selections on the source image, and on the destination image
+                long srcRow0 = srcPtr + (((long) (v0 + ry) * src.getWidth() + u0) << 2);
+                long srcRow1 = srcPtr + (((long) (v1 + ry) * src.getWidth() + u1) << 2);
+                long destRow = destPtr + (((long) (dv + ry) * dest.getWidth() + du) << 2);
+
+                for (int rx = 0; rx < w; rx++) {
+                    long offset = (long) rx << 2;
+                    MemoryUtil.memPutInt(destRow + offset, lerpColor(alphaMask, MemoryUtil.memGetInt(srcRow0 + offset), MemoryUtil.memGetInt(srcRow1 + offset), weight));
+                }
+            }
+            return;
+        }
 
+        // iterate through the entire section of the image to be copied over, row by row
+        for (int ry = 0; ry < h; ry++) {
+            for (int rx = 0; rx < w; rx++) {
                 // set the color of the target pixel on the destination image to a blend
                 // of the colors from the corresponding pixels on the source image
-                dest.setColor(trgX, trgY, lerpColor(src.getFormat(), src.getColor(srcX0, srcY0), src.getColor(srcX1, srcY1), blend));
+                dest.setColor(du + rx, dv + ry, lerpColor(alphaMask, src.getColor(u0 + rx, v0 + ry), src.getColor(u1 + rx, v1 + ry), weight));
             }
         }
     }
 
     public static int lerpColor(NativeImage.@NotNull Format format, int c1, int c2, float delta) {
-        int a1 = (c1 >> format.getAlphaOffset()) & 0xFF;
-        int r1 = (c1 >> format.getRedOffset()) & 0xFF;
-        int g1 = (c1 >> format.getGreenOffset()) & 0xFF;
-        int b1 = (c1 >> format.getBlueOffset()) & 0xFF;
-
-        int a2 = (c2 >> format.getAlphaOffset()) & 0xFF;
-        int r2 = (c2 >> format.getRedOffset()) & 0xFF;
-        int g2 = (c2 >> format.getGreenOffset()) & 0xFF;
-        int b2 = (c2 >> format.getBlueOffset()) & 0xFF;
+        return lerpColor(getAlphaMask(format), c1, c2, getBlendWeight(delta));
+    }
 
+    /**
+     * Blend two packed colors using 8-bit fixed point math, processing two channels per multiplication
+     *
+     * @param alphaMask The bits of the alpha channel within a packed color, or 0 if there is none
+     * @param c1 The first color
+     * @param c2 The second color
+     * @param weight The blend between both colors from 0 (solid first color) to 256 (solid second color),
+     *               see {@link #getBlendWeight(float)}
+     * @return The blended color, in the same format as both input colors
+     */
+    public static int lerpColor(int alphaMask, int c1, int c2, int weight) {
         // If the first or second color is transparent,
         // don't lerp any leftover rgb values and instead
         // only use those of the non-transparent color
-        if (a1 == 0) {
-            r1 = r2;
-            g1 = g2;
-            b1 = b2;
-        } else if (a2 == 0) {
-            r2 = r1;
-            g2 = g1;
-            b2 = b1;
-        }
-
-        int oa = (int) MathHelper.lerp(delta, a1, a2);
-        int or = (int) MathHelper.lerp(delta, r1, r2);
-        int og = (int) MathHelper.lerp(delta, g1, g2);
-        int ob = (int) MathHelper.lerp(delta, b1, b2);
-
-        return (oa << format.getAlphaOffset()) | (or << format.getRedOffset()) | (og << format.getGreenOffset()) | (ob << format.getBlueOffset());
+        if (alphaMask != 0) {
+            if ((c1 & alphaMask) == 0) {
+                c1 = c2 & ~alphaMask;
+            } else if ((c2 & alphaMask) == 0) {
+                c2 = c1 & ~alphaMask;
+            }
+        }
+
+        // Each mask holds two channels 16 bits apart, so that both fit in one multiplication
+        // (255 * 256 is below 2^16) without carrying into one another
+        final int invWeight = 256 - weight;
+        int low = (((c1 & 0x00FF00FF) * invWeight + (c2 & 0x00FF00FF) * weight) >>> 8) & 0x00FF00FF;
+        int high = (((c1 >>> 8) & 0x00FF00FF) * invWeight + ((c2 >>> 8) & 0x00FF00FF) * weight) & 0xFF00FF00;
+
+        return low | high;
+    }
+
+    /**
+     * Convert a blend factor from 0 to 1 into the fixed point weight from 0 to 256 used for blending colors
+     */
+    public static int getBlendWeight(float blend) {
+        return MathHelper.clamp((int) (blend * 256), 0, 256);
+    }
+
+    private static int getAlphaMask(NativeImage.@NotNull Format format) {
+        return format.hasAlpha() ? 0xFF << format.getAlphaOffset() : 0;
     }
 }